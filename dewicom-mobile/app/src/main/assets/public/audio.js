@@ -1,5 +1,6 @@
-// Gestion audio : capture micro, lecture chunks PCM, sonnerie
+// Gestion audio : capture micro, codecs (PCM / μ-law / IMA-ADPCM), lecture des chunks, sonnerie
 let nextPlayTime = 0;
+let audioSeq = 0; // séquence des trames émises : le relais détecte pertes, réordonnancements et retards
 
 function setupAudioProcessor() {
   if (!mediaStream) return;
@@ -11,15 +12,16 @@ function setupAudioProcessor() {
   processor.onaudioprocess = (e) => {
     if (!speaking) return;
     const input = e.inputBuffer.getChannelData(0);
-    const int16 = floatTo16BitPCM(input);
+    const chunk = encodeAudio(floatTo16BitPCM(input));
+    const codec = upstreamCodec, seq = audioSeq++, ts = Math.round(performance.now());
     if (directorMode) {
       const activeTalkChannels = getAllTalkChannels();
       if (activeTalkChannels.length > 0) {
         // Émet une seule fois — le serveur se charge de la distribution multi-canal
-        socket.emit("audio-chunk", { channel: activeTalkChannels[0], talkChannels: activeTalkChannels, chunk: int16.buffer }, { binary: true });
+        socket.emit("audio-chunk", { channel: activeTalkChannels[0], talkChannels: activeTalkChannels, codec, seq, ts, chunk }, { binary: true });
       }
     } else {
-      socket.emit("audio-chunk", { channel: myChannel, chunk: int16.buffer }, { binary: true });
+      socket.emit("audio-chunk", { channel: myChannel, codec, seq, ts, chunk }, { binary: true });
     }
   };
 }
@@ -32,13 +34,108 @@ function floatTo16BitPCM(float32Array) {
   return buffer;
 }
 
-async function playChunk(data) {
+// ── Codecs ─────────────────────────────────────────────────────────────────
+// Mêmes formats que le relais Java (AudioCodec) : μ-law G.711 8 bits/échantillon ;
+// IMA-ADPCM 4 bits/échantillon, en-tête par trame [prédicteur int16 LE, index, 0] puis
+// quartets (poids faible d'abord). Chaque trame se décode seule.
+const ADPCM_INDEX = [-1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8];
+const ADPCM_STEP = [
+  7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+  50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+  337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+  2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+  15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767];
+let adpcmEnc = { predictor: 0, index: 0 };
+
+function resetAudioEncoder() { adpcmEnc = { predictor: 0, index: 0 }; }
+
+function encodeAudio(int16) {
+  if (upstreamCodec === "mulaw") return mulawEncode(int16);
+  if (upstreamCodec === "adpcm") return adpcmEncode(int16);
+  return int16.buffer;
+}
+
+function decodeAudio(buf, codec) {
+  if (codec === "mulaw") return mulawDecode(new Uint8Array(buf));
+  if (codec === "adpcm") return adpcmDecode(new Uint8Array(buf));
+  return new Int16Array(buf, 0, buf.byteLength >> 1);
+}
+
+function mulawEncode(int16) {
+  const out = new Uint8Array(int16.length);
+  for (let i = 0; i < int16.length; i++) {
+    let s = int16[i], sign = 0;
+    if (s < 0) { s = -s; sign = 0x80; }
+    if (s > 32635) s = 32635;
+    s += 0x84;
+    let exp = 7;
+    for (let mask = 0x4000; (s & mask) === 0 && exp > 0; mask >>= 1) exp--;
+    out[i] = ~(sign | (exp << 4) | ((s >> (exp + 3)) & 0x0F)) & 0xFF;
+  }
+  return out.buffer;
+}
+
+function mulawDecode(bytes) {
+  const out = new Int16Array(bytes.length);
+  for (let i = 0; i < bytes.length; i++) {
+    const u = ~bytes[i] & 0xFF;
+    const exp = (u >> 4) & 0x07;
+    const s = ((((u & 0x0F) << 3) + 0x84) << exp) - 0x84;
+    out[i] = (u & 0x80) ? -s : s;
+  }
+  return out;
+}
+
+function adpcmEncode(int16) {
+  const n = int16.length;
+  const out = new Uint8Array(4 + ((n + 1) >> 1));
+  let p = adpcmEnc.predictor, idx = adpcmEnc.index;
+  out[0] = p & 0xFF; out[1] = (p >> 8) & 0xFF; out[2] = idx; out[3] = 0;
+  for (let i = 0; i < n; i++) {
+    const step = ADPCM_STEP[idx];
+    let diff = int16[i] - p, code = 0;
+    if (diff < 0) { code = 8; diff = -diff; }
+    let delta = step >> 3;
+    if (diff >= step) { code |= 4; diff -= step; delta += step; }
+    if (diff >= step >> 1) { code |= 2; diff -= step >> 1; delta += step >> 1; }
+    if (diff >= step >> 2) { code |= 1; delta += step >> 2; }
+    p += (code & 8) ? -delta : delta;
+    p = Math.max(-32768, Math.min(32767, p));
+    idx = Math.max(0, Math.min(88, idx + ADPCM_INDEX[code]));
+    out[4 + (i >> 1)] |= (i & 1) ? code << 4 : code;
+  }
+  adpcmEnc = { predictor: p, index: idx };
+  return out.buffer;
+}
+
+function adpcmDecode(bytes) {
+  if (bytes.length < 4) return new Int16Array(0);
+  let p = (bytes[1] << 24 >> 16) | bytes[0];
+  let idx = Math.max(0, Math.min(88, bytes[2]));
+  const out = new Int16Array((bytes.length - 4) * 2);
+  for (let i = 0; i < out.length; i++) {
+    const b = bytes[4 + (i >> 1)];
+    const code = (i & 1) ? (b >> 4) & 0x0F : b & 0x0F;
+    const step = ADPCM_STEP[idx];
+    let delta = step >> 3;
+    if (code & 4) delta += step;
+    if (code & 2) delta += step >> 1;
+    if (code & 1) delta += step >> 2;
+    p += (code & 8) ? -delta : delta;
+    p = Math.max(-32768, Math.min(32767, p));
+    idx = Math.max(0, Math.min(88, idx + ADPCM_INDEX[code]));
+    out[i] = p;
+  }
+  return out;
+}
+
+async function playChunk(data, codec) {
   if (!audioCtx) audioCtx = new (window.AudioContext || window.webkitAudioContext)({ sampleRate: 16000, latencyHint: "interactive" });
   if (audioCtx.state === "suspended") await audioCtx.resume();
 
   let int16;
   if (data instanceof ArrayBuffer) {
-    int16 = new Int16Array(data);
+    int16 = decodeAudio(data, codec);
   } else if (data instanceof Int16Array) {
     int16 = data;
   } else if (ArrayBuffer.isView(data)) {
@@ -26,9 +26,11 @@ let myName = "";
 let myChannel = "general";
 let channels = [...CHANNELS_DEFAULT];
 let channelState = {};
+let presenceVersion = null; // version de présence du relais APK (null : pas de versionnage)
 let mediaStream = null;
 let audioCtx = null;
 let processor = null;
+let upstreamCodec = "pcm"; // codec négocié avec le relais APK (événement "codec")
 let speaking = false;
 let channelStates = {};
 let directorMode = false;
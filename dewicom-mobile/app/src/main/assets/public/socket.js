@@ -34,12 +34,13 @@ function _emitJoin(sock) {
   if (!myName || !myChannel) return;
   const listenChannels = Object.keys(channelStates || {}).filter(id => channelStates[id]?.listen);
   const talkChannels   = Object.keys(channelStates || {}).filter(id => channelStates[id]?.talk);
-  sock.emit("join", { clientId, name: myName, channel: myChannel, listenChannels, talkChannels });
+  sock.emit("join", { clientId, name: myName, channel: myChannel, listenChannels, talkChannels, codecs: ["adpcm", "mulaw", "pcm"] });
 }
 
 function _registerSocketHandlers(sock, ip, mode) {
   sock.on("connect", () => {
     setConnected(true);
+    presenceVersion = null; // nouvelle connexion : le relais repart de son propre état
     updateLeaderFooter(ip, mode);
     document.getElementById("connBadge")?.classList.add("live");
     document.getElementById("reconnectBtn").style.display = "none";
@@ -47,12 +48,18 @@ function _registerSocketHandlers(sock, ip, mode) {
   });
   sock.on("disconnect", () => {
     setConnected(false);
+    upstreamCodec = "pcm"; // renégocié au prochain join
     document.getElementById("connBadge")?.classList.remove("live");
     document.getElementById("reconnectBtn").style.display = "inline-block";
   });
-  sock.on("audio-chunk", ({ from, chunk }) => {
+  sock.on("audio-chunk", ({ from, chunk, codec }) => {
     if (!audioCtx) audioCtx = new (window.AudioContext || window.webkitAudioContext)({ sampleRate: 16000 });
-    playChunk(chunk);
+    playChunk(chunk, codec);
+  });
+  // Le relais APK annonce le codec retenu parmi "codecs" : audio émis et reçu dans ce format
+  sock.on("codec", ({ codec }) => {
+    upstreamCodec = codec || "pcm";
+    resetAudioEncoder();
   });
   sock.on("call-ring", ({ from, channel }) => {
     showRingAlert(from, channel);
@@ -61,11 +68,20 @@ function _registerSocketHandlers(sock, ip, mode) {
   sock.on("ptt-state", ({ from, fromId, channel, speaking: isSpeaking }) => {
     if (fromId !== sock.id) updateSpeakingEntry(fromId, from, channel, isSpeaking);
   });
-  sock.on("channel-state", (state) => {
+  sock.on("channel-state", (state, version) => {
+    // Snapshot plus ancien que les deltas déjà appliqués : ignoré
+    if (typeof version === "number" && presenceVersion !== null && version < presenceVersion) return;
     channelState = state;
-    renderChannelStrip();
-    updateLeaderUserCount();
-    if (!document.getElementById("usersPanel").classList.contains("hidden")) renderUsersList();
+    presenceVersion = typeof version === "number" ? version : null;
+    _renderPresence();
+  });
+  // Deltas de présence regroupés par le relais ; un trou de version déclenche une resynchronisation
+  sock.on("presence-delta", ({ from, v, deltas }) => {
+    if (presenceVersion === null || from > presenceVersion) { sock.emit("presence-sync", {}); return; }
+    if (v <= presenceVersion) return;
+    deltas.forEach(_applyPresenceDelta);
+    presenceVersion = v;
+    _renderPresence();
   });
   sock.on("channels-init", (chs) => {
     channels = chs;
@@ -77,10 +93,28 @@ function _registerSocketHandlers(sock, ip, mode) {
   sock.on("user-left",   ({ name, channel }) => addActivityEntry(`${name} a quitté ${getChannelName(channel)}`, "🔴", "#ef4444"));
 }
 
+function _applyPresenceDelta(d) {
+  // Idempotent : l'utilisateur est retiré de partout puis replacé dans son canal courant
+  for (const id in channelState) {
+    const s = channelState[id];
+    if (s?.users) s.users = s.users.filter(u => u.id !== d.id);
+  }
+  if (d.type !== "user-left" && channelState[d.channel]) channelState[d.channel].users.push({ id: d.id, name: d.name });
+}
+
+function _renderPresence() {
+  renderChannelStrip();
+  updateLeaderUserCount();
+  if (!document.getElementById("usersPanel").classList.contains("hidden")) renderUsersList();
+}
+
 function makeNativeSocket(ip) {
   const wsUrl = "ws://" + ip + ":3002";
   console.log("[socket] Connexion WebSocket natif →", wsUrl);
   const ws = new WebSocket(wsUrl);
+  ws.binaryType = "arraybuffer";
+  // Événement binaire Socket.IO en cours de réassemblage ("45<n>-[...]" + n trames binaires)
+  let pending = null;
   const sock = {
     _ws: ws,
     _handlers: {},
@@ -89,8 +123,9 @@ function makeNativeSocket(ip) {
     emit(event, data, opts) {
       if (this._ws.readyState !== WebSocket.OPEN) return;
       if (data && data.chunk instanceof ArrayBuffer) {
-        const b64 = btoa(String.fromCharCode(...new Uint8Array(data.chunk)));
-        this._ws.send("42" + JSON.stringify([event, { ...data, chunk: b64, _b64: true }]));
+        // Pièce jointe binaire Socket.IO : en-tête texte + PCM brut, relayés tels quels par le serveur
+        this._ws.send("451-" + JSON.stringify([event, { ...data, chunk: { _placeholder: true, num: 0 } }]));
+        this._ws.send(data.chunk);
       } else {
         this._ws.send("42" + JSON.stringify([event, data]));
       }
@@ -103,7 +138,26 @@ function makeNativeSocket(ip) {
   ws.onerror = (e) => console.error("[WS] error", e);
   ws.onmessage = (msg) => {
     const text = msg.data;
+    if (text instanceof ArrayBuffer) {
+      if (pending) {
+        pending.buffers.push(text);
+        if (pending.buffers.length === pending.count) {
+          const [event, payload] = pending.arr;
+          sock._trigger(event, _fillPlaceholders(payload, pending.buffers));
+          pending = null;
+        }
+      } else {
+        sock._trigger("audio-chunk", { chunk: text, codec: upstreamCodec }); // trame brute sans en-tête, codec négocié
+      }
+      return;
+    }
     if (text === "2") { ws.send("3"); return; }
+    const bin = /^45(\d+)-/.exec(text);
+    if (bin) {
+      try { pending = { count: parseInt(bin[1], 10), buffers: [], arr: JSON.parse(text.substring(bin[0].length)) }; }
+      catch(e) { console.error("[WS] parse error", e); pending = null; }
+      return;
+    }
     if (!text.startsWith("42")) return;
     try {
       const arr = JSON.parse(text.substring(2));
@@ -116,13 +170,24 @@ function makeNativeSocket(ip) {
           for (let i = 0; i < bin.length; i++) view[i] = bin.charCodeAt(i);
           payload = { ...payload, chunk: buf };
         }
-        sock._trigger(arr[0], payload);
+        sock._trigger(arr[0], payload, ...arr.slice(2));
       }
     } catch(e) { console.error("[WS] parse error", e); }
   };
   return sock;
 }
 
+function _fillPlaceholders(data, buffers) {
+  if (data && data._placeholder) return buffers[data.num];
+  if (Array.isArray(data)) return data.map(d => _fillPlaceholders(d, buffers));
+  if (data && typeof data === "object") {
+    const out = {};
+    for (const k in data) out[k] = _fillPlaceholders(data[k], buffers);
+    return out;
+  }
+  return data;
+}
+
 // Reconnexion transparente vers un nouveau leader (sans rechargement de page)
 function reconnectToServer(ip, mode) {
   if (!myName) return;
@@ -0,0 +1,42 @@
+package com.dewicom;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Adaptateurs Android du relais (module relay-core) : assets de l'APK, stockage privé de
+ * l'application, IP Wi-Fi (NetworkDiscovery) et journaux vers logcat.
+ */
+final class AndroidRelayHost implements RelayHost {
+
+    private static final RelayLog.Sink LOGCAT = (level, tag, msg, tr) -> {
+        if (tr != null) Log.println(level, tag, msg + '\n' + Log.getStackTraceString(tr));
+        else Log.println(level, tag, msg);
+    };
+
+    private final Context context;
+    private final AssetSource assets;
+
+    AndroidRelayHost(Context context) {
+        this.context = context.getApplicationContext();
+        AssetManager am = this.context.getAssets();
+        this.assets = new AssetSource() {
+            @Override public String[] list(String path) throws IOException { return am.list(path); }
+            @Override public InputStream open(String path) throws IOException { return am.open(path); }
+        };
+        RelayLog.setSink(LOGCAT);
+    }
+
+    @Override public AssetSource assets() { return assets; }
+
+    @Override public File dataDir() { return context.getFilesDir(); }
+
+    @Override public String localIPv4() { return NetworkDiscovery.getSubnetInfo(context).deviceIPv4; }
+
+    @Override public String mode() { return "apk"; }
+}
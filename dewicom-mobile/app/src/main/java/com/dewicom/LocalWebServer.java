@@ -1,675 +0,0 @@
-package com.dewicom;
-
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.util.Base64;
-import android.util.Log;
-
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
-
-import fi.iki.elonen.NanoHTTPD;
-
-import org.java_websocket.WebSocket;
-import org.java_websocket.handshake.ClientHandshake;
-import org.java_websocket.server.WebSocketServer;
-import org.java_websocket.server.DefaultSSLWebSocketServerFactory;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.math.BigInteger;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.KeyStore;
-import java.security.cert.X509Certificate;
-import java.util.Date;
-import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLServerSocketFactory;
-import javax.security.auth.x500.X500Principal;
-
-public class LocalWebServer {
-    private static final String TAG = "LocalWebServer";
-    private static final String APP_VERSION = "1.4.2";
-    public static final int HTTP_PORT = 3001;
-    public static final int WS_PORT = 3002;
-
-    private static final String MCAST_ADDR = "224.0.0.251";
-    private static final int MCAST_PORT = 9999;
-
-    private final Context context;
-    private HttpServer httpServer;
-    private DewiComWSServer wsServer;
-    private Timer announceTimer;
-    private DatagramSocket announceSocket;
-    private boolean running = false;
-    private boolean useHttps = false;
-    private SSLContext sslContext = null;
-
-    // Données utilisateur par socket
-    static class UserInfo {
-        String name, channel, clientId;
-        Set<String> listenChannels = new HashSet<>();
-        Set<String> talkChannels   = new HashSet<>();
-        UserInfo(String name, String channel, String clientId) {
-            this.name = name; this.channel = channel; this.clientId = clientId;
-        }
-    }
-
-    // État partagé
-    final Map<String, Set<WebSocket>> channelSockets = new HashMap<>();
-    final Map<WebSocket, UserInfo> socketUser = new HashMap<>();
-
-    public LocalWebServer(Context context) {
-        this.context = context;
-        for (String ch : new String[]{"general","foh","plateau","lumiere","regie"}) {
-            channelSockets.put(ch, new HashSet<>());
-        }
-    }
-
-    /**
-     * Génère un KeyStore contenant un certificat self-signed pour HTTPS.
-     * Utilise l'API Java standard disponible sur Android (sun.security.x509 non dispo —
-     * on utilise android.security.keystore via KeyPairGenerator avec provider "AndroidKeyStore").
-     */
-    private SSLContext generateSelfSignedSSLContext() {
-        try {
-            // Génère une paire de clés RSA 2048
-            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
-            kpg.initialize(2048);
-            KeyPair kp = kpg.generateKeyPair();
-
-            // Crée un certificat X.509 self-signed via réflexion sur les classes internes Android
-            // (android.net.http n'expose pas de générateur de cert, on utilise la méthode portable)
-            X509Certificate cert = generateSelfSignedCert(kp);
-            if (cert == null) return null;
-
-            // Construit un KeyStore avec la clé privée + cert
-            KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
-            ks.load(null, null);
-            ks.setKeyEntry("dewicom", kp.getPrivate(), "dewicom".toCharArray(),
-                    new java.security.cert.Certificate[]{cert});
-
-            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-            kmf.init(ks, "dewicom".toCharArray());
-
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            ctx.init(kmf.getKeyManagers(), null, null);
-            Log.d(TAG, "Certificat TLS self-signed généré");
-            return ctx;
-        } catch (Exception e) {
-            Log.w(TAG, "Impossible de générer le cert TLS: " + e.getMessage());
-            return null;
-        }
-    }
-
-    /**
-     * Génère un X509Certificate self-signed via l'implémentation interne Android.
-     * Compatible API 21+.
-     */
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private X509Certificate generateSelfSignedCert(KeyPair kp) {
-        try {
-            // Tente via android.net.http.X509TrustManagerExtensions (non disponible ici)
-            // → Utilise la réflexion sur sun.security.x509 (disponible dans le runtime Android)
-            Class certInfoClass = Class.forName("sun.security.x509.X509CertInfo");
-            Class certImplClass = Class.forName("sun.security.x509.X509CertImpl");
-            Class x500NameClass  = Class.forName("sun.security.x509.X500Name");
-            Class certValClass   = Class.forName("sun.security.x509.CertificateValidity");
-            Class certSnClass    = Class.forName("sun.security.x509.CertificateSerialNumber");
-            Class certAlgClass   = Class.forName("sun.security.x509.CertificateAlgorithmId");
-            Class algIdClass     = Class.forName("sun.security.x509.AlgorithmId");
-            Class certSubjClass  = Class.forName("sun.security.x509.CertificateSubjectName");
-            Class certIssuerClass= Class.forName("sun.security.x509.CertificateIssuerName");
-            Class certKeyClass   = Class.forName("sun.security.x509.CertificateX509Key");
-
-            long now = System.currentTimeMillis();
-            Date from = new Date(now);
-            Date to   = new Date(now + 10L * 365 * 24 * 60 * 60 * 1000); // 10 ans
-
-            Object dn      = x500NameClass.getConstructor(String.class).newInstance("CN=DewiCom");
-            Object validity = certValClass.getConstructor(Date.class, Date.class).newInstance(from, to);
-            Object sn       = certSnClass.getConstructor(BigInteger.class).newInstance(BigInteger.valueOf(now));
-            Object algId    = algIdClass.getMethod("get", String.class).invoke(null, "SHA256WithRSA");
-            Object certAlg  = certAlgClass.getConstructor(algIdClass).newInstance(algId);
-
-            Object info = certInfoClass.newInstance();
-            java.lang.reflect.Method set = certInfoClass.getMethod("set", String.class, Object.class);
-            set.invoke(info, "validity",    validity);
-            set.invoke(info, "serialNumber", sn);
-            set.invoke(info, "subject",      certSubjClass.getConstructor(x500NameClass).newInstance(dn));
-            set.invoke(info, "issuer",       certIssuerClass.getConstructor(x500NameClass).newInstance(dn));
-            set.invoke(info, "key",          certKeyClass.getConstructor(java.security.PublicKey.class).newInstance(kp.getPublic()));
-            set.invoke(info, "algorithmID",  certAlg);
-
-            Object cert = certImplClass.getConstructor(certInfoClass).newInstance(info);
-            certImplClass.getMethod("sign", java.security.PrivateKey.class, String.class)
-                    .invoke(cert, kp.getPrivate(), "SHA256WithRSA");
-            return (X509Certificate) cert;
-        } catch (Exception e) {
-            Log.w(TAG, "sun.security.x509 non disponible: " + e.getMessage() + " — fallback HTTP");
-            return null;
-        }
-    }
-
-    public void start() throws IOException {
-        start(false);
-    }
-
-    public void start(boolean forceHttps) throws IOException {
-        if (forceHttps) {
-            sslContext = generateSelfSignedSSLContext();
-            useHttps = (sslContext != null);
-        }
-
-        httpServer = new HttpServer();
-        if (useHttps) {
-            SSLServerSocketFactory ssf = sslContext.getServerSocketFactory();
-            httpServer.makeSecure(ssf, null);
-        }
-        httpServer.start(NanoHTTPD.SOCKET_READ_TIMEOUT, false);
-
-        wsServer = new DewiComWSServer(new InetSocketAddress(WS_PORT));
-        if (useHttps) {
-            wsServer.setWebSocketFactory(new DefaultSSLWebSocketServerFactory(sslContext));
-        }
-        wsServer.start();
-
-        running = true;
-        Log.d(TAG, "Serveurs démarrés - " + (useHttps ? "HTTPS" : "HTTP") + ":" + HTTP_PORT + " WS:" + WS_PORT);
-
-        startMulticastAnnounce();
-    }
-
-    public boolean isHttps() { return useHttps; }
-    public SSLContext getSslContext() { return sslContext; }
-
-    public void stop() {
-        if (announceTimer != null) { announceTimer.cancel(); announceTimer = null; }
-        if (announceSocket != null) { announceSocket.close(); announceSocket = null; }
-        if (httpServer != null) httpServer.stop();
-        if (wsServer != null) {
-            try { wsServer.stop(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
-        }
-        running = false;
-    }
-
-    private void startMulticastAnnounce() {
-        try {
-            // Récupère l'IP locale pour l'inclure dans l'annonce
-            NetworkDiscovery.SubnetInfo info = NetworkDiscovery.getSubnetInfo(context);
-            final String localIP = info.deviceIPv4 != null ? info.deviceIPv4 : "127.0.0.1";
-
-            announceSocket = new DatagramSocket();
-            announceSocket.setBroadcast(true);
-
-            String proto = useHttps ? "https" : "http";
-            final byte[] payload = ("{\"service\":\"DewiCom\",\"version\":\"" + APP_VERSION + "\"," +
-                    "\"ip\":\"" + localIP + "\"," +
-                    "\"port\":" + HTTP_PORT + "," +
-                    "\"protocol\":\"" + proto + "\"," +
-                    "\"mode\":\"apk\"}").getBytes("UTF-8");
-
-            final InetAddress group = InetAddress.getByName(MCAST_ADDR);
-
-            announceTimer = new Timer("dewicom-announce", true);
-            announceTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        DatagramPacket packet = new DatagramPacket(payload, payload.length, group, MCAST_PORT);
-                        announceSocket.send(packet);
-                        Log.d(TAG, "Annonce multicast envoyée: " + localIP);
-                    } catch (Exception e) {
-                        Log.w(TAG, "Erreur annonce multicast", e);
-                    }
-                }
-            }, 0, 1000); // immédiat puis toutes les 1s — réduit le délai de découverte
-
-            Log.d(TAG, "Annonces multicast démarrées sur " + MCAST_ADDR + ":" + MCAST_PORT);
-        } catch (Exception e) {
-            Log.w(TAG, "Impossible de démarrer les annonces multicast", e);
-        }
-    }
-
-    public boolean isAlive() {
-        return running;
-    }
-
-    // ── Serveur HTTP (NanoHTTPD) ──────────────────────────────────────────────
-    private class HttpServer extends NanoHTTPD {
-        HttpServer() { super(HTTP_PORT); }
-
-        @Override
-        public Response serve(IHTTPSession session) {
-            String uri = session.getUri();
-            Log.d(TAG, "HTTP: " + uri);
-
-            if (uri.equals("/api/dewicom-discovery") || uri.equals("/api/ping")) {
-                String json = "{\"service\":\"DewiCom\",\"version\":\"" + APP_VERSION + "\",\"status\":\"running\",\"mode\":\"apk\"}";
-                Response r = newFixedLengthResponse(Response.Status.OK, "application/json", json);
-                r.addHeader("Access-Control-Allow-Origin", "*");
-                return r;
-            }
-
-            if (uri.equals("/qr")) {
-                try {
-                    NetworkDiscovery.SubnetInfo info = NetworkDiscovery.getSubnetInfo(context);
-                    String ip = info.deviceIPv4 != null ? info.deviceIPv4 : "127.0.0.1";
-                    String proto2 = useHttps ? "https" : "http";
-                    String url = proto2 + "://" + ip + ":" + HTTP_PORT;
-                    String qrDataUrl = generateQrDataUrl(url);
-                    String json = "{\"qr\":\"" + qrDataUrl + "\",\"url\":\"" + url + "\"}";
-                    Response r = newFixedLengthResponse(Response.Status.OK, "application/json", json);
-                    r.addHeader("Access-Control-Allow-Origin", "*");
-                    return r;
-                } catch (Exception e) {
-                    Log.e(TAG, "Erreur /qr", e);
-                    Response r = newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "application/json", "{\"error\":\"" + e.getMessage() + "\"}");
-                    r.addHeader("Access-Control-Allow-Origin", "*");
-                    return r;
-                }
-            }
-
-            String path = uri.equals("/") ? "public/index.html" : "public" + uri;
-            try {
-                InputStream is = context.getAssets().open(path);
-                return newChunkedResponse(Response.Status.OK, getMime(uri), is);
-            } catch (IOException e) {
-                try {
-                    InputStream is = context.getAssets().open("public/index.html");
-                    return newChunkedResponse(Response.Status.OK, "text/html", is);
-                } catch (IOException e2) {
-                    return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "404");
-                }
-            }
-        }
-
-        private String getMime(String uri) {
-            if (uri.endsWith(".js")) return "application/javascript";
-            if (uri.endsWith(".css")) return "text/css";
-            if (uri.endsWith(".json")) return "application/json";
-            if (uri.endsWith(".png")) return "image/png";
-            return "text/html";
-        }
-    }
-
-    // ── Serveur WebSocket (Java-WebSocket) ───────────────────────────────────
-    private class DewiComWSServer extends WebSocketServer {
-        DewiComWSServer(InetSocketAddress addr) { super(addr); }
-
-        @Override
-        public void onOpen(WebSocket ws, ClientHandshake h) {
-            Log.d(TAG, "WS connecté: " + ws.getRemoteSocketAddress());
-        }
-
-        @Override
-        public void onClose(WebSocket ws, int code, String reason, boolean remote) {
-            synchronized (LocalWebServer.this) {
-                UserInfo user = socketUser.remove(ws);
-                if (user != null) {
-                    for (Set<WebSocket> s : channelSockets.values()) s.remove(ws);
-                    broadcastChannel(user.channel, "42[\"user-left\",{\"name\":\"" + user.name + "\",\"channel\":\"" + user.channel + "\"}]", ws);
-                    broadcastChannelState();
-                    Log.d(TAG, user.name + " déconnecté");
-                }
-            }
-        }
-
-        @Override
-        public void onMessage(WebSocket ws, String text) {
-            Log.d(TAG, "WS msg: " + text);
-            try {
-                // Socket.io protocol: "42["event",data]" ou heartbeat "2"
-                String payload = text;
-                if (payload.equals("2") || payload.equals("2probe")) { ws.send("3"); return; } // heartbeat ping
-                if (payload.startsWith("42")) payload = payload.substring(2); // strip "42" prefix
-                else if (payload.startsWith("4")) payload = payload.substring(1); // strip "4" prefix
-                if (!payload.startsWith("[")) return;
-
-                String event = extractArrayString(payload, 0);
-                if (event == null) return;
-                Log.d(TAG, "Event: " + event);
-
-                switch (event) {
-                    case "join": {
-                        String name = extractJson(payload, "name");
-                        String channel = extractJson(payload, "channel");
-                        String clientId = extractJson(payload, "clientId");
-                        if (name == null || channel == null) return;
-                        synchronized (LocalWebServer.this) {
-                            // Nettoie toute entrée existante avec le même clientId (reconnexion)
-                            java.util.Iterator<Map.Entry<WebSocket, UserInfo>> it = socketUser.entrySet().iterator();
-                            while (it.hasNext()) {
-                                Map.Entry<WebSocket, UserInfo> entry = it.next();
-                                if (entry.getKey() == ws) continue;
-                                UserInfo u = entry.getValue();
-                                boolean sameClient = (clientId != null && clientId.equals(u.clientId))
-                                        || (clientId == null && name.equals(u.name));
-                                if (sameClient) {
-                                    for (Set<WebSocket> s : channelSockets.values()) s.remove(entry.getKey());
-                                    it.remove();
-                                }
-                            }
-                            for (Set<WebSocket> s : channelSockets.values()) s.remove(ws);
-                            UserInfo info = new UserInfo(name, channel, clientId != null ? clientId : "");
-                            // listenChannels depuis le payload
-                            String listenRaw = extractJsonArray(payload, "listenChannels");
-                            if (listenRaw != null) {
-                                for (String lch : listenRaw.split(",")) {
-                                    lch = lch.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                    if (!lch.isEmpty()) info.listenChannels.add(lch);
-                                }
-                            }
-                            // talkChannels depuis le payload
-                            String talkRaw = extractJsonArray(payload, "talkChannels");
-                            if (talkRaw != null) {
-                                for (String tch : talkRaw.split(",")) {
-                                    tch = tch.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                    if (!tch.isEmpty()) info.talkChannels.add(tch);
-                                }
-                            }
-                            socketUser.put(ws, info);
-                            channelSockets.computeIfAbsent(channel, k -> new HashSet<>()).add(ws);
-                            for (String lch : info.listenChannels) {
-                                if (!lch.equals(channel))
-                                    channelSockets.computeIfAbsent(lch, k -> new HashSet<>()).add(ws);
-                            }
-                        }
-                        ws.send("42[\"channels-init\"," + buildChannelsJson() + "]");
-                        broadcastChannel(channel, "42[\"user-joined\",{\"name\":\"" + name + "\",\"channel\":\"" + channel + "\"}]", ws);
-                        broadcastChannelState();
-                        Log.d(TAG, name + " rejoint " + channel);
-                        break;
-                    }
-                    case "switch-channel": {
-                        String newCh = extractJson(payload, "channel");
-                        if (newCh == null) return;
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        synchronized (LocalWebServer.this) {
-                            Set<WebSocket> old = channelSockets.get(user.channel);
-                            if (old != null) old.remove(ws);
-                            broadcastChannel(user.channel, "42[\"user-left\",{\"name\":\"" + user.name + "\",\"channel\":\"" + user.channel + "\"}]", ws);
-                            user.channel = newCh;
-                            channelSockets.computeIfAbsent(newCh, k -> new HashSet<>()).add(ws);
-                        }
-                        broadcastChannel(newCh, "42[\"user-joined\",{\"name\":\"" + user.name + "\",\"channel\":\"" + newCh + "\"}]", ws);
-                        broadcastChannelState();
-                        break;
-                    }
-                    case "update-listen-channels": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        Set<String> newListen = new HashSet<>();
-                        String listenRaw = extractJsonArray(payload, "listenChannels");
-                        if (listenRaw != null) {
-                            for (String lch : listenRaw.split(",")) {
-                                lch = lch.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                if (!lch.isEmpty()) newListen.add(lch);
-                            }
-                        }
-                        synchronized (LocalWebServer.this) {
-                            for (String old : user.listenChannels) {
-                                if (!newListen.contains(old) && !old.equals(user.channel) && !user.talkChannels.contains(old))
-                                    channelSockets.getOrDefault(old, new HashSet<>()).remove(ws);
-                            }
-                            for (String lch : newListen) {
-                                if (!user.listenChannels.contains(lch) && !lch.equals(user.channel))
-                                    channelSockets.computeIfAbsent(lch, k -> new HashSet<>()).add(ws);
-                            }
-                            user.listenChannels = newListen;
-                        }
-                        break;
-                    }
-                    case "update-talk-channels": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        Set<String> newTalk = new HashSet<>();
-                        String talkRaw = extractJsonArray(payload, "talkChannels");
-                        if (talkRaw != null) {
-                            for (String tch : talkRaw.split(",")) {
-                                tch = tch.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                if (!tch.isEmpty()) newTalk.add(tch);
-                            }
-                        }
-                        synchronized (LocalWebServer.this) { user.talkChannels = newTalk; }
-                        break;
-                    }
-                    case "ptt-start": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        Set<String> talkChs = user.talkChannels.isEmpty() ? new HashSet<>(java.util.Collections.singleton(user.channel)) : user.talkChannels;
-                        for (String tch : talkChs)
-                            broadcastChannel(tch, "42[\"ptt-state\",{\"from\":\"" + user.name + "\",\"fromId\":\"" + ws.hashCode() + "\",\"channel\":\"" + tch + "\",\"speaking\":true}]", ws);
-                        break;
-                    }
-                    case "ptt-stop": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        Set<String> talkChs = user.talkChannels.isEmpty() ? new HashSet<>(java.util.Collections.singleton(user.channel)) : user.talkChannels;
-                        for (String tch : talkChs)
-                            broadcastChannel(tch, "42[\"ptt-state\",{\"from\":\"" + user.name + "\",\"fromId\":\"" + ws.hashCode() + "\",\"channel\":\"" + tch + "\",\"speaking\":false}]", ws);
-                        break;
-                    }
-                    case "audio-chunk": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        // payload.talkChannels prioritaire (envoyé par le client director en une seule émission)
-                        Set<String> talkChs = new HashSet<>();
-                        String talkRawPayload = extractJsonArray(payload, "talkChannels");
-                        if (talkRawPayload != null) {
-                            for (String t : talkRawPayload.split(",")) {
-                                t = t.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                if (!t.isEmpty()) talkChs.add(t);
-                            }
-                        }
-                        if (talkChs.isEmpty()) talkChs = user.talkChannels.isEmpty() ? new HashSet<>(java.util.Collections.singleton(user.channel)) : user.talkChannels;
-                        Set<WebSocket> seen = new HashSet<>();
-                        for (String tch : talkChs) {
-                            Set<WebSocket> sockets = channelSockets.get(tch);
-                            if (sockets == null) continue;
-                            for (WebSocket dest : new HashSet<>(sockets)) {
-                                if (dest != ws && dest.isOpen() && seen.add(dest)) dest.send(text);
-                            }
-                        }
-                        break;
-                    }
-                    case "call-ring": {
-                        UserInfo user = socketUser.get(ws);
-                        if (user == null) return;
-                        // Director mode : talkChannels du payload prioritaire, sinon canal unique
-                        Set<String> ringChs = new HashSet<>();
-                        String talkRawRing = extractJsonArray(payload, "talkChannels");
-                        if (talkRawRing != null) {
-                            for (String t : talkRawRing.split(",")) {
-                                t = t.trim().replace("\"", "").replace("[", "").replace("]", "");
-                                if (!t.isEmpty()) ringChs.add(t);
-                            }
-                        }
-                        if (ringChs.isEmpty()) {
-                            String singleCh = extractJson(payload, "channel");
-                            ringChs.add(singleCh != null ? singleCh : user.channel);
-                        }
-                        String firstCh = ringChs.iterator().next();
-                        // Notifie les membres des canaux + ceux qui les écoutent — déduplication
-                        Set<WebSocket> targets = new HashSet<>();
-                        for (Map.Entry<WebSocket, UserInfo> e : socketUser.entrySet()) {
-                            if (e.getKey() == ws) continue;
-                            UserInfo u = e.getValue();
-                            for (String rch : ringChs) {
-                                if (u.channel.equals(rch) || u.listenChannels.contains(rch)) {
-                                    targets.add(e.getKey()); break;
-                                }
-                            }
-                        }
-                        String ringMsg = "42[\"call-ring\",{\"from\":\"" + user.name + "\",\"channel\":\"" + firstCh + "\"}]";
-                        for (WebSocket t : targets) { if (t.isOpen()) t.send(ringMsg); }
-                        break;
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Erreur message", e);
-            }
-        }
-
-        @Override
-        public void onMessage(WebSocket ws, java.nio.ByteBuffer buf) {
-            UserInfo user = socketUser.get(ws);
-            if (user == null) return;
-            Set<String> talkChs = user.talkChannels.isEmpty() ? new HashSet<>(java.util.Collections.singleton(user.channel)) : user.talkChannels;
-            // Déduplique les destinataires pour éviter envois multiples en director mode
-            Set<WebSocket> seen = new HashSet<>();
-            for (String tch : talkChs) {
-                Set<WebSocket> sockets = channelSockets.get(tch);
-                if (sockets == null) continue;
-                for (WebSocket dest : new HashSet<>(sockets)) {
-                    if (dest != ws && dest.isOpen() && seen.add(dest)) dest.send(buf);
-                }
-            }
-        }
-
-        @Override
-        public void onError(WebSocket ws, Exception e) {
-            Log.e(TAG, "WS erreur", e);
-        }
-
-        @Override
-        public void onStart() {
-            Log.d(TAG, "WS serveur démarré sur port " + WS_PORT);
-        }
-    }
-
-    // ── Helpers ───────────────────────────────────────────────────────────────
-
-    private String generateQrDataUrl(String content) throws WriterException {
-        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
-        hints.put(EncodeHintType.MARGIN, 1);
-        BitMatrix matrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 300, 300, hints);
-        int w = matrix.getWidth(), h = matrix.getHeight();
-        int[] pixels = new int[w * h];
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                pixels[y * w + x] = matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
-        Bitmap bmp = Bitmap.createBitmap(pixels, w, h, Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bmp.compress(Bitmap.CompressFormat.PNG, 100, out);
-        String b64 = Base64.encodeToString(out.toByteArray(), Base64.NO_WRAP);
-        return "data:image/png;base64," + b64;
-    }
-
-    private synchronized void broadcastChannel(String channel, String msg, WebSocket sender) {
-        Set<WebSocket> sockets = channelSockets.get(channel);
-        if (sockets == null) return;
-        for (WebSocket ws : new HashSet<>(sockets)) {
-            if (ws != sender && ws.isOpen()) ws.send(msg);
-        }
-    }
-
-    private synchronized void broadcastChannelBinary(String channel, java.nio.ByteBuffer buf, WebSocket sender) {
-        Set<WebSocket> sockets = channelSockets.get(channel);
-        if (sockets == null) return;
-        for (WebSocket ws : new HashSet<>(sockets)) {
-            if (ws != sender && ws.isOpen()) ws.send(buf);
-        }
-    }
-
-    private synchronized void broadcastAll(String msg) {
-        for (Set<WebSocket> sockets : channelSockets.values()) {
-            for (WebSocket ws : sockets) { if (ws.isOpen()) ws.send(msg); }
-        }
-    }
-
-    private synchronized void broadcastAllExcept(String msg, WebSocket sender) {
-        for (Set<WebSocket> sockets : channelSockets.values()) {
-            for (WebSocket ws : new HashSet<>(sockets)) {
-                if (ws.isOpen() && ws != sender) ws.send(msg);
-            }
-        }
-    }
-
-    private String buildChannelsJson() {
-        StringBuilder sb = new StringBuilder("[");
-        String[][] defs = {{"general","Général","#6b7280"},{"foh","FOH Son","#3b82f6"},{"plateau","Plateau","#f97316"},{"lumiere","Lumière","#a855f7"},{"regie","Régie","#22c55e"}};
-        for (int i = 0; i < defs.length; i++) {
-            if (i > 0) sb.append(",");
-            sb.append("{\"id\":\"").append(defs[i][0]).append("\",\"name\":\"").append(defs[i][1]).append("\",\"color\":\"").append(defs[i][2]).append("\"}");
-        }
-        return sb.append("]").toString();
-    }
-
-    private synchronized void broadcastChannelState() {
-        // Format attendu par le JS : { channelId: { users: [{id, name}], name, color } }
-        String[][] defs = {{"general","Général","#6b7280"},{"foh","FOH Son","#3b82f6"},{"plateau","Plateau","#f97316"},{"lumiere","Lumière","#a855f7"},{"regie","Régie","#22c55e"}};
-        StringBuilder sb = new StringBuilder("{");
-        for (int i = 0; i < defs.length; i++) {
-            String chId = defs[i][0];
-            if (i > 0) sb.append(",");
-            sb.append("\"").append(chId).append("\":{\"name\":\"").append(defs[i][1]).append("\",\"color\":\"").append(defs[i][2]).append("\",\"users\":");
-            sb.append("[");
-            boolean first = true;
-            // N'affiche que les membres dont c'est le canal principal
-            for (Map.Entry<WebSocket, UserInfo> e : socketUser.entrySet()) {
-                if (e.getValue().channel.equals(chId)) {
-                    if (!first) sb.append(",");
-                    sb.append("{\"id\":\"").append(e.getKey().hashCode()).append("\",\"name\":\"").append(e.getValue().name.replace("\"", "")).append("\"}");
-                    first = false;
-                }
-            }
-            sb.append("]}");
-        }
-        sb.append("}");
-        broadcastAll("42[\"channel-state\"," + sb + "]");
-    }
-
-    private String extractJson(String json, String key) {
-        String s = "\"" + key + "\":\"";
-        int i = json.indexOf(s); if (i < 0) return null;
-        i += s.length();
-        int e = json.indexOf("\"", i); if (e < 0) return null;
-        return json.substring(i, e);
-    }
-
-    private String extractJsonArray(String json, String key) {
-        String s = "\"" + key + "\":[";
-        int i = json.indexOf(s); if (i < 0) return null;
-        i += s.length() - 1;
-        int e = json.indexOf("]", i); if (e < 0) return null;
-        return json.substring(i, e + 1);
-    }
-
-    private String extractArrayString(String array, int index) {
-        int depth = 0, count = 0;
-        for (int i = 0; i < array.length(); i++) {
-            char c = array.charAt(i);
-            if (c == '[' || c == '{') depth++;
-            else if (c == ']' || c == '}') depth--;
-            else if (c == '"' && depth == 1) {
-                if (count == index) {
-                    int e = array.indexOf("\"", i + 1);
-                    return e < 0 ? null : array.substring(i + 1, e);
-                }
-                count++;
-                i = array.indexOf("\"", i + 1);
-                if (i < 0) return null;
-            }
-        }
-        return null;
-    }
-}
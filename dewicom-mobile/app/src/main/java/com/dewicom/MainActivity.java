@@ -281,8 +281,11 @@ public class MainActivity extends Activity {
         serverMode = true;
         new Thread(() -> {
             try {
-                localWebServer = new LocalWebServer(this);
-                localWebServer.start(true); // HTTPS
+                localWebServer = new LocalWebServer(new AndroidRelayHost(this));
+                // HTTPS ; start retourne quand HTTP et WebSocket acceptent les connexions
+                localWebServer.start(true);
+                if (!localWebServer.isReady()) throw new IllegalStateException("serveur non prêt");
+                Log.d(TAG, "Serveur prêt — étapes (ms) " + localWebServer.getStartupTimings());
                 String proto = localWebServer.isHttps() ? "https" : "http";
                 String ip = getLocalIPAddress();
                 String url = proto + "://127.0.0.1:" + LocalWebServer.HTTP_PORT;
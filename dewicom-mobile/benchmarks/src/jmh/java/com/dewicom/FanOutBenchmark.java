@@ -0,0 +1,117 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relais d'une trame audio de 20 ms vers un canal de clients auditeurs : résolution des
+ * destinataires par route, transcodage une fois par codec, framing encode-once et envoi.
+ * Reproduit LocalWebServer.relayAudio (partie WebSocket) et l'ancien audio-chunk texte.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class FanOutBenchmark {
+
+    /** Nombre de membres du canal du talker. */
+    @Param({"5", "50", "500"})
+    public int clients;
+
+    /** Canaux du registre : le coût du routage ne doit pas en dépendre. */
+    @Param({"5", "32"})
+    public int channels;
+
+    private RelayFixture fixture;
+    private StubSocket talker, director;
+    private ClientSession talkerSession, directorSession;
+    private ByteBuffer pcmFrame, adpcmFrame;
+    private String legacyText;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Le canal du talker compte clients membres, 20 autres clients sont sur les canaux voisins
+        fixture = new RelayFixture(clients + 20, clients, channels);
+        talker = fixture.sockets[0];
+        talkerSession = talker.getAttachment();
+        director = StubSocket.open(1, fixture.channelIds)[0];
+        directorSession = director.getAttachment();
+        fixture.routing = fixture.routing.join(director, fixture.director(0));
+
+        byte[] pcm = new byte[AudioMixer.FRAME * 2];
+        for (int i = 0; i < AudioMixer.FRAME; i++) {
+            short s = (short) (8000 * Math.sin(i * 2 * Math.PI * 440 / 16000));
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        pcmFrame = ByteBuffer.wrap(pcm);
+        ClientSession encoder = new ClientSession(fixture.channelIds);
+        encoder.beginFrame();
+        ByteBuffer adpcm = encoder.transcode(pcmFrame, AudioCodec.PCM, AudioCodec.ADPCM);
+        byte[] copy = new byte[adpcm.remaining()];
+        adpcm.get(copy);
+        adpcmFrame = ByteBuffer.wrap(copy);
+        legacyText = "42[\"audio-chunk\",{\"chunk\":\"" + Base64.getEncoder().encodeToString(pcm) + "\"}]";
+    }
+
+    /** Trame binaire PCM d'un talker : destinataires précalculés par route. */
+    @Benchmark
+    public int binaryAudio() {
+        return relay(talker, talkerSession, fixture.routing.recipientsByCodec(talker), pcmFrame, AudioCodec.PCM);
+    }
+
+    /** Trame ADPCM d'un director parlant sur 3 canaux : destinataires dédupliqués précalculés. */
+    @Benchmark
+    public int directorAudio() {
+        return relay(director, directorSession, fixture.routing.recipientsByCodec(director), adpcmFrame, AudioCodec.ADPCM);
+    }
+
+    /** Même trame avec des talkChannels ad hoc dans le payload : ids résolus et destinataires calculés à la trame. */
+    @Benchmark
+    public int directorAdHocAudio() {
+        RoutingTable rt = fixture.routing;
+        int[] talk = rt.channels.indices(RelayFixture.DIRECTOR_TALK, RelayFixture.DIRECTOR_TALK.length);
+        return relay(director, directorSession, rt.recipientsByCodec(talk), adpcmFrame, AudioCodec.ADPCM);
+    }
+
+    /** Cibles d'une sonnerie director sur DIRECTOR_TALK : masques des canaux entendus intersectés sur toute la table. */
+    @Benchmark
+    public int ringTargets() {
+        RoutingTable rt = fixture.routing;
+        int[] ring = rt.channels.indices(RelayFixture.DIRECTOR_TALK, RelayFixture.DIRECTOR_TALK.length);
+        return rt.listeners(ChannelBits.of(ring)).length;
+    }
+
+    /** Ancien audio-chunk texte (base64) rediffusé tel quel. */
+    @Benchmark
+    public int legacyTextAudio() {
+        return FrameBroadcaster.broadcastAudio(fixture.routing.recipients(talker), talker, legacyText);
+    }
+
+    private int relay(StubSocket ws, ClientSession session, WebSocket[][] dests, ByteBuffer payload, int codec) {
+        long s = seq++;
+        payload.clear();
+        session.beginFrame();
+        int copies = 0;
+        for (int c = 0; c < AudioCodec.COUNT; c++) {
+            if (dests[c].length == 0) continue;
+            ByteBuffer out = c == codec ? payload : session.transcode(payload, codec, c);
+            copies += FrameBroadcaster.broadcastAudio(dests[c], ws, session.audioHeader(c, s, s * 20), out);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dewicom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Join avec dédoublonnage (RoutingTable.join) : un client qui se reconnecte sur un nouveau
+ * socket remplace son ancienne entrée, puis le snapshot de routage est reconstruit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class JoinBenchmark {
+
+    /** Clients connectés, répartis par canaux de cette taille. */
+    @Param({"5", "50", "500"})
+    public int clients;
+
+    private RelayFixture fixture;
+    private StubSocket[] reconnect;
+    private RoutingTable.UserInfo returning, fresh, anonymous;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new RelayFixture(clients, Math.max(1, clients / ChannelRegistry.DEFAULTS.size()));
+        reconnect = StubSocket.open(2, fixture.channelIds);
+        returning = fixture.user(clients / 2, "foh");
+        fresh = fixture.user(clients + 1, "foh");
+        // Ancien client sans clientId : dédoublonné par nom
+        RoutingTable.UserInfo u = fixture.user(clients / 3, "plateau");
+        anonymous = new RoutingTable.UserInfo(u.name, u.channel, "", u.codec, null, false, u.listen, u.talk, u.defs);
+    }
+
+    /** Reconnexion d'un client connu : son ancienne entrée est retirée. */
+    @Benchmark
+    public RoutingTable reconnectByClientId() {
+        return fixture.routing.join(reconnect[next++ & 1], returning);
+    }
+
+    /** Reconnexion d'un client sans clientId, reconnu par son nom. */
+    @Benchmark
+    public RoutingTable reconnectByName() {
+        return fixture.routing.join(reconnect[next++ & 1], anonymous);
+    }
+
+    /** Nouveau client : aucune entrée retirée, le canal grossit d'un membre. */
+    @Benchmark
+    public RoutingTable newClient() {
+        return fixture.routing.join(reconnect[next++ & 1], fresh);
+    }
+}
@@ -0,0 +1,59 @@
+package com.dewicom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffusion de la présence (successeur de broadcastChannelState) : état complet envoyé au join
+ * et delta coalescé diffusé à tous les clients après un changement de canal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class PresenceBenchmark {
+
+    /** Clients connectés, répartis par canaux de cette taille. */
+    @Param({"5", "50", "500"})
+    public int clients;
+
+    private RelayFixture fixture;
+    private RoutingTable before, after;
+    private Presence presence;
+    private boolean moved;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new RelayFixture(clients, Math.max(1, clients / ChannelRegistry.DEFAULTS.size()));
+        StubSocket mover = fixture.sockets[0];
+        before = fixture.routing;
+        after = before.with(mover, before.user(mover).withChannel("regie"));
+        // La source alterne entre les deux états : chaque flush diffuse un user-moved
+        presence = new Presence(() -> moved ? after : before);
+        moved = true;
+        presence.flush();
+    }
+
+    /** channel-state complet envoyé à un client qui rejoint. */
+    @Benchmark
+    public void snapshot() {
+        presence.sendSnapshot(fixture.sockets[0]);
+    }
+
+    /** presence-delta (un déplacement) calculé puis diffusé à tous les clients. */
+    @Benchmark
+    public void delta() {
+        moved = !moved;
+        presence.flush();
+    }
+}
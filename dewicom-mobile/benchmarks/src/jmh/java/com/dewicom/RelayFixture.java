@@ -0,0 +1,58 @@
+package com.dewicom;
+
+import java.io.IOException;
+
+/**
+ * Population de clients simulés pour les benchmarks : clients répartis sur les canaux du
+ * registre (canaux par défaut, complétés jusqu'à channels), codecs négociés en proportions
+ * égales (PCM, μ-law, ADPCM), un client sur quatre écoutant aussi "general" en plus de son
+ * canal principal.
+ */
+final class RelayFixture {
+
+    static final String[] DIRECTOR_TALK = {"general", "foh", "plateau"};
+
+    final ChannelRegistry registry = new ChannelRegistry(null);
+    final String[] channels;
+    final StringInterner channelIds = new StringInterner();
+    final StubSocket[] sockets;
+    RoutingTable routing;
+
+    RelayFixture(int clients, int channelSize) {
+        this(clients, channelSize, ChannelRegistry.DEFAULTS.size());
+    }
+
+    /** clients sockets ; channelSize d'entre eux par canal (le reste sur les canaux suivants). */
+    RelayFixture(int clients, int channelSize, int channelCount) {
+        try {
+            for (int i = registry.defs().size(); i < channelCount; i++) registry.create("ch" + i, "Canal " + i, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // registre en mémoire : pas d'écriture
+        }
+        ChannelRegistry.Channel[] defs = registry.defs().ordered();
+        channels = new String[defs.length];
+        for (int i = 0; i < defs.length; i++) {
+            channels[i] = defs[i].id;
+            channelIds.intern(channels[i], 0, channels[i].length());
+        }
+        routing = RoutingTable.EMPTY.withChannels(registry.defs());
+        sockets = StubSocket.open(clients, channelIds);
+        for (int i = 0; i < clients; i++)
+            routing = routing.join(sockets[i], user(i, channels[Math.min(i / channelSize, channels.length - 1)]));
+    }
+
+    RoutingTable.UserInfo user(int i, String channel) {
+        ChannelRegistry.Defs defs = registry.defs();
+        long[] listen = i % 4 == 3 && !channel.equals("general")
+                ? ChannelBits.of(defs.indexOf("general")) : ChannelBits.NONE;
+        return new RoutingTable.UserInfo("Beltpack " + i, channel, "client-" + i, i % AudioCodec.COUNT,
+                null, false, listen, ChannelBits.NONE, defs);
+    }
+
+    /** Client director : parle simultanément sur DIRECTOR_TALK. */
+    RoutingTable.UserInfo director(int i) {
+        ChannelRegistry.Defs defs = registry.defs();
+        return new RoutingTable.UserInfo("Director " + i, "regie", "director-" + i, AudioCodec.ADPCM,
+                null, false, ChannelBits.NONE, defs.bits(DIRECTOR_TALK, DIRECTOR_TALK.length), defs);
+    }
+}
@@ -0,0 +1,73 @@
+package com.dewicom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Décodage des messages Socket.IO reçus par le relais (SocketIoEvent.parse), sur les formes
+ * réellement émises par socket.js : join complet, en-tête binaire audio-chunk, ancien
+ * audio-chunk base64 (le chunk est sauté sans allocation), mise à jour des canaux écoutés.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class SocketIoEventBenchmark {
+
+    private SocketIoEvent event;
+    private String join, binaryHeader, legacyAudio, listen, escapedName;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        event = new SocketIoEvent(new StringInterner("general", "foh", "plateau", "lumiere", "regie"));
+        join = "42[\"join\",{\"clientId\":\"c-8f3a2b1e\",\"name\":\"Plateau 3\",\"channel\":\"plateau\","
+                + "\"listenChannels\":[\"general\",\"regie\"],\"talkChannels\":[\"plateau\"],"
+                + "\"codecs\":[\"adpcm\",\"mulaw\",\"pcm\"],\"udp\":true,\"multicast\":true}]";
+        binaryHeader = "451-[\"audio-chunk\",{\"codec\":\"adpcm\",\"seq\":48213,\"ts\":1760690000123,"
+                + "\"talkChannels\":[\"general\",\"foh\",\"plateau\"],\"chunk\":{\"_placeholder\":true,\"num\":0}}]";
+        legacyAudio = "42[\"audio-chunk\",{\"chunk\":\"" + Base64.getEncoder().encodeToString(new byte[AudioMixer.FRAME * 2])
+                + "\",\"channel\":\"foh\"}]";
+        listen = "42[\"update-listen-channels\",{\"listenChannels\":[\"general\",\"foh\",\"lumiere\",\"regie\"]}]";
+        escapedName = "42[\"join\",{\"clientId\":\"c-1\",\"name\":\"R\\u00e9gie \\\"A\\\"\",\"channel\":\"regie\"}]";
+    }
+
+    @Benchmark
+    public String join() {
+        event.parse(join);
+        return event.name;
+    }
+
+    @Benchmark
+    public long binaryAudioHeader() {
+        event.parse(binaryHeader);
+        return event.seq + event.talkCount;
+    }
+
+    @Benchmark
+    public String legacyAudioChunk() {
+        event.parse(legacyAudio);
+        return event.channel;
+    }
+
+    @Benchmark
+    public int updateListenChannels() {
+        event.parse(listen);
+        return event.listenCount;
+    }
+
+    @Benchmark
+    public String escapedJoin() {
+        event.parse(escapedName);
+        return event.name;
+    }
+}
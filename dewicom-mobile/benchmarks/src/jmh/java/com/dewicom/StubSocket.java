@@ -0,0 +1,81 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * WebSocket ouvert sans réseau : les envois sont comptés puis oubliés, le coût mesuré est celui
+ * du relais (routage, framing encode-once), pas celui des sockets. Tous partagent le même draft,
+ * comme des clients navigateur réels.
+ */
+final class StubSocket implements WebSocket {
+    static final Draft DRAFT = new Draft_6455();
+
+    private static final InetSocketAddress REMOTE = new InetSocketAddress("127.0.0.1", 50000);
+
+    long sentFrames;
+    long sentBytes;
+    private Object attachment;
+
+    /** n sockets ouverts, chacun avec sa ClientSession (état de contre-pression). */
+    static StubSocket[] open(int n, StringInterner channelIds) {
+        StubSocket[] sockets = new StubSocket[n];
+        for (int i = 0; i < n; i++) {
+            sockets[i] = new StubSocket();
+            sockets[i].setAttachment(new ClientSession(channelIds));
+        }
+        return sockets;
+    }
+
+    @Override public void sendFrame(Collection<Framedata> frames) {
+        for (Framedata f : frames) {
+            sentFrames++;
+            sentBytes += f.getPayloadData().remaining();
+        }
+    }
+
+    @Override public void sendFrame(Framedata frame) {
+        sentFrames++;
+        sentBytes += frame.getPayloadData().remaining();
+    }
+
+    @Override public void send(String text) { sendFrame(DRAFT.createFrames(text, false)); }
+    @Override public void send(ByteBuffer bytes) { sendFrame(DRAFT.createFrames(bytes, false)); }
+    @Override public void send(byte[] bytes) { send(ByteBuffer.wrap(bytes)); }
+
+    @Override public boolean isOpen() { return true; }
+    @Override public boolean isClosing() { return false; }
+    @Override public boolean isFlushAndClose() { return false; }
+    @Override public boolean isClosed() { return false; }
+    @Override public Draft getDraft() { return DRAFT; }
+    @Override public ReadyState getReadyState() { return ReadyState.OPEN; }
+
+    @Override @SuppressWarnings("unchecked")
+    public <T> T getAttachment() { return (T) attachment; }
+    @Override public <T> void setAttachment(T attachment) { this.attachment = attachment; }
+
+    @Override public void close(int code, String message) {}
+    @Override public void close(int code) {}
+    @Override public void close() {}
+    @Override public void closeConnection(int code, String message) {}
+    @Override public void sendPing() {}
+    @Override public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {}
+    @Override public boolean hasBufferedData() { return false; }
+    @Override public InetSocketAddress getRemoteSocketAddress() { return REMOTE; }
+    @Override public InetSocketAddress getLocalSocketAddress() { return null; }
+    @Override public String getResourceDescriptor() { return "/socket.io/?EIO=4&transport=websocket"; }
+    @Override public boolean hasSSLSupport() { return false; }
+    @Override public SSLSession getSSLSession() { throw new IllegalArgumentException("Pas de TLS"); }
+    @Override public IProtocol getProtocol() { return null; }
+}
@@ -0,0 +1,42 @@
+package com.dewicom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latences relais (µs) en seaux de 10 µs jusqu'à 2 s, au-delà dans un seau de débordement :
+ * percentiles à 10 µs près, enregistrement sans verrou depuis tous les threads clients.
+ */
+final class LatencyRecorder {
+
+    private static final int RESOLUTION_US = 10;
+    private static final int BUCKETS = 200_000; // 2 s
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxUs = new AtomicLong();
+
+    void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet((int) Math.min(micros / RESOLUTION_US, BUCKETS));
+        total.incrementAndGet();
+        long max;
+        while (micros > (max = maxUs.get()) && !maxUs.compareAndSet(max, micros)) { /* retry */ }
+    }
+
+    long count() { return total.get(); }
+
+    long maxMicros() { return maxUs.get(); }
+
+    /** Borne haute (µs) du seau contenant le percentile p (0..100), -1 sans mesure. */
+    long percentile(double p) {
+        long n = total.get();
+        if (n == 0) return -1;
+        long rank = (long) Math.ceil(n * p / 100.0), seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(rank, 1)) return i == BUCKETS ? maxUs.get() : (long) (i + 1) * RESOLUTION_US;
+        }
+        return maxUs.get();
+    }
+}
@@ -0,0 +1,194 @@
+package com.dewicom;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Générateur de charge du relais : N beltpacks simulés (SimClient) sur localhost, talkers en PTT à
+ * rapport cyclique, directors parlant sur plusieurs canaux, le reste en écoute. Rapporte la latence
+ * relais (p50/p99/p99.9), les trames perdues et la charge CPU de l'hôte.
+ *
+ *   java -cp … com.dewicom.LoadGenerator [--url ws://127.0.0.1:3002 | --embedded [--ws-decoders 4]]
+ *        [--clients 100]
+ *        [--talkers 10] [--directors 1] [--channels 5] [--listen 1] [--duty 0.5] [--ptt-period 4]
+ *        [--frame-ms 20] [--frame-bytes 640] [--duration 30] [--warmup 5] [--threads 2] [--seed 1]
+ *
+ * --embedded démarre le relais (HeadlessRelay, HTTP, sans annonce sur le réseau : les téléphones de la
+ * salle ne le découvrent pas) dans le même processus : la charge CPU du
+ * processus comprend alors relais et générateur. Le relais ne doit pas être en mix-minus (flux
+ * mixés, marquage perdu) ; les clients négocient PCM pour que la charge reste intacte.
+ */
+public final class LoadGenerator {
+
+    private static final String[] CHANNELS = {"general", "foh", "plateau", "lumiere", "regie"};
+
+    public static void main(String[] args) throws Exception {
+        String url = "ws://127.0.0.1:" + LocalWebServer.WS_PORT;
+        boolean embedded = false;
+        int clients = 100, talkers = 10, directors = 1, channels = CHANNELS.length, listen = 1;
+        double duty = 0.5, pttPeriodS = 4;
+        int frameMs = 20, frameBytes = 640, durationS = 30, warmupS = 5, threads = 2, wsDecoders = 0;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url":         url = args[++i]; break;
+                case "--embedded":    embedded = true; break;
+                case "--ws-decoders": wsDecoders = Integer.parseInt(args[++i]); break;
+                case "--clients":     clients = Integer.parseInt(args[++i]); break;
+                case "--talkers":     talkers = Integer.parseInt(args[++i]); break;
+                case "--directors":   directors = Integer.parseInt(args[++i]); break;
+                case "--channels":    channels = Math.max(1, Math.min(CHANNELS.length, Integer.parseInt(args[++i]))); break;
+                case "--listen":      listen = Integer.parseInt(args[++i]); break;
+                case "--duty":        duty = Double.parseDouble(args[++i]); break;
+                case "--ptt-period":  pttPeriodS = Double.parseDouble(args[++i]); break;
+                case "--frame-ms":    frameMs = Integer.parseInt(args[++i]); break;
+                case "--frame-bytes": frameBytes = Integer.parseInt(args[++i]); break;
+                case "--duration":    durationS = Integer.parseInt(args[++i]); break;
+                case "--warmup":      warmupS = Integer.parseInt(args[++i]); break;
+                case "--threads":     threads = Integer.parseInt(args[++i]); break;
+                case "--seed":        seed = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Option inconnue: " + args[i]);
+                    System.exit(2);
+                    return;
+            }
+        }
+        talkers = Math.min(talkers, clients);
+        directors = Math.min(directors, talkers);
+
+        LocalWebServer relay = null;
+        if (embedded) {
+            RelayLog.setSink(RelayLog.console(RelayLog.WARN));
+            File data = Files.createTempDirectory("dewicom-load").toFile();
+            relay = new LocalWebServer(new HeadlessRelay(new File(data, "public"), data, "127.0.0.1"));
+            relay.setWsDecoders(wsDecoders);
+            relay.setAnnounce(false);
+            relay.start(false);
+            url = "ws://127.0.0.1:" + LocalWebServer.WS_PORT;
+        }
+
+        // Population : canal principal tourne sur les canaux, listen canaux écoutés en plus ;
+        // les premiers clients parlent, les directors sur trois canaux à la fois
+        SimClient.Stats stats = new SimClient.Stats();
+        URI uri = new URI(url);
+        List<SimClient> all = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            String ch = CHANNELS[i % channels];
+            String[] heard = new String[Math.min(listen, channels - 1)];
+            for (int k = 0; k < heard.length; k++) heard[k] = CHANNELS[(i + 1 + k) % channels];
+            String[] talk;
+            if (i < directors) talk = new String[]{ch, CHANNELS[(i + 1) % channels], CHANNELS[(i + 2) % channels]};
+            else if (i < talkers) talk = new String[]{ch};
+            else talk = new String[0];
+            SimClient c = new SimClient(uri, i, ch, heard, distinct(talk), frameBytes, stats);
+            if (uri.getScheme().equals("wss")) c.setSocketFactory(trustAll().getSocketFactory());
+            all.add(c);
+        }
+        for (SimClient c : all) {
+            if (c.talk.length == 0) continue;
+            for (SimClient other : all) if (other != c && other.hears(c.talk)) c.fanOut++;
+        }
+
+        long t0 = System.nanoTime();
+        for (SimClient c : all) c.connectBlocking(5, TimeUnit.SECONDS);
+        for (SimClient c : all) c.joined.await(10, TimeUnit.SECONDS);
+        int open = 0;
+        for (SimClient c : all) if (c.isOpen()) open++;
+        System.out.printf("%d/%d clients connectés et inscrits en %d ms — %d talkers dont %d directors, %d canaux, rapport PTT %.0f %%%n",
+                open, clients, (System.nanoTime() - t0) / 1_000_000, talkers, directors, channels, duty * 100);
+
+        // PTT : chaque talker parle duty × période, avec une phase aléatoire
+        Random rnd = new Random(seed);
+        long periodNanos = (long) (pttPeriodS * 1e9);
+        long[] phase = new long[clients];
+        for (int i = 0; i < clients; i++) phase[i] = (long) (rnd.nextDouble() * periodNanos);
+        final double dutyCycle = duty;
+        ScheduledExecutorService ticker = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "dewicom-load-tick");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int k = 0; k < threads; k++) {
+            final int part = k, nThreads = threads;
+            ticker.scheduleAtFixedRate(() -> {
+                long now = System.nanoTime();
+                for (int i = part; i < all.size(); i += nThreads) {
+                    SimClient c = all.get(i);
+                    c.tick(dutyCycle >= 1 || ((now + phase[i]) % periodNanos) < dutyCycle * periodNanos);
+                }
+            }, 0, frameMs, TimeUnit.MILLISECONDS);
+        }
+
+        Thread.sleep(warmupS * 1000L);
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        os.getCpuLoad(); os.getProcessCpuLoad(); // première mesure de référence
+        stats.windowStart = System.nanoTime();
+        double hostSum = 0, hostMax = 0, procSum = 0, procMax = 0;
+        int samples = 0;
+        long lastSent = 0, lastRecv = 0;
+        for (int s = 1; s <= durationS; s++) {
+            Thread.sleep(1000);
+            double host = Math.max(0, os.getCpuLoad()) * 100, proc = Math.max(0, os.getProcessCpuLoad()) * 100;
+            hostSum += host; procSum += proc; samples++;
+            hostMax = Math.max(hostMax, host); procMax = Math.max(procMax, proc);
+            long sent = stats.framesSent.get(), recv = stats.received.get();
+            System.out.printf("t=%3ds  trames %6d/s  reçues %7d/s  p99 %6d µs  CPU hôte %5.1f %%  processus %5.1f %%%n",
+                    s, sent - lastSent, recv - lastRecv, stats.latency.percentile(99), host, proc);
+            lastSent = sent; lastRecv = recv;
+        }
+        stats.windowEnd = System.nanoTime();
+        ticker.shutdownNow();
+        Thread.sleep(1000); // trames en vol
+
+        long expected = stats.expected.get(), received = stats.received.get();
+        long dropped = Math.max(0, expected - received);
+        LatencyRecorder lat = stats.latency;
+        System.out.println();
+        System.out.printf("Trames émises      %d (%d talkers, %d ms)%n", stats.framesSent.get(), talkers, frameMs);
+        System.out.printf("Livraisons         %d / %d attendues — %d perdues (%.3f %%), %d trous de séquence%n",
+                received, expected, dropped, expected > 0 ? 100.0 * dropped / expected : 0, stats.gaps.get());
+        System.out.printf("Latence relais µs  p50 %d  p99 %d  p99.9 %d  max %d (%d mesures)%n",
+                lat.percentile(50), lat.percentile(99), lat.percentile(99.9), lat.maxMicros(), lat.count());
+        System.out.printf("CPU (%d cœurs)      hôte moy %.1f %% max %.1f %% — processus%s moy %.1f %% max %.1f %%%n",
+                os.getAvailableProcessors(), hostSum / samples, hostMax, embedded ? " (relais + générateur)" : "",
+                procSum / samples, procMax);
+        if (stats.errors.get() > 0) System.out.println("Erreurs WebSocket  " + stats.errors.get());
+        if (relay != null) System.out.println("Plans du relais    " + relay.getPlaneStats());
+
+        for (SimClient c : all) c.close();
+        if (relay != null) relay.stop();
+        System.exit(0);
+    }
+
+    private static String[] distinct(String[] channels) {
+        List<String> out = new ArrayList<>();
+        for (String ch : channels) if (!out.contains(ch)) out.add(ch);
+        return out.toArray(new String[0]);
+    }
+
+    /** Le relais présente un certificat self-signed : accepté sans vérification (outil de test local). */
+    private static SSLContext trustAll() throws Exception {
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, new TrustManager[]{new X509TrustManager() {
+            @Override public void checkClientTrusted(X509Certificate[] chain, String authType) {}
+            @Override public void checkServerTrusted(X509Certificate[] chain, String authType) {}
+            @Override public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+        }}, new SecureRandom());
+        return ctx;
+    }
+}
@@ -0,0 +1,144 @@
+package com.dewicom;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Beltpack simulé : join comme socket.js (codec PCM, canaux écoutés/parlés), audio-chunk binaire
+ * toutes les 20 ms quand il parle, ptt-start/ptt-stop aux transitions.
+ *
+ * Chaque trame porte dans ses premiers octets un marquage (MAGIC, émetteur, séquence, System.nanoTime
+ * à l'envoi). Le relais transmet la charge PCM telle quelle aux auditeurs PCM (il réécrit seq/ts de
+ * l'en-tête, pas la charge) : l'auditeur calcule la latence relais sur la même horloge.
+ */
+final class SimClient extends WebSocketClient {
+
+    static final int MAGIC = 0x44455749; // "DEWI"
+    static final int STAMP_BYTES = 24;
+
+    /** Compteurs partagés par tous les clients. */
+    static final class Stats {
+        final LatencyRecorder latency = new LatencyRecorder();
+        final AtomicLong framesSent = new AtomicLong();
+        final AtomicLong expected = new AtomicLong();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong gaps = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        /** Fenêtre de mesure (System.nanoTime) : seules les trames envoyées dedans sont comptées. */
+        volatile long windowStart = Long.MAX_VALUE, windowEnd = Long.MAX_VALUE;
+
+        boolean inWindow(long sendNanos) { return sendNanos >= windowStart && sendNanos < windowEnd; }
+    }
+
+    final int id;
+    final String channel;
+    final String[] listen;
+    /** Canaux parlés (vide : ne parle pas) ; plusieurs pour un director. */
+    final String[] talk;
+    /** Auditeurs attendus par trame émise (calculé par LoadGenerator). */
+    int fanOut;
+    final CountDownLatch joined = new CountDownLatch(1);
+
+    private final Stats stats;
+    private final String header;
+    private final ByteBuffer frame;
+    private long seq;
+    private boolean talking;
+    // Thread de lecture uniquement : dernière séquence reçue par émetteur
+    private final Map<Integer, Long> lastSeq = new HashMap<>();
+
+    SimClient(URI uri, int id, String channel, String[] listen, String[] talk, int frameBytes, Stats stats) {
+        super(uri);
+        this.id = id;
+        this.channel = channel;
+        this.listen = listen;
+        this.talk = talk;
+        this.stats = stats;
+        this.frame = ByteBuffer.allocate(Math.max(frameBytes, STAMP_BYTES));
+        this.header = "451-[\"audio-chunk\",{\"channel\":\"" + (talk.length > 0 ? talk[0] : channel) + "\""
+                + (talk.length > 1 ? ",\"talkChannels\":" + jsonArray(talk) : "")
+                + ",\"codec\":\"pcm\",\"seq\":%d,\"ts\":%d,\"chunk\":{\"_placeholder\":true,\"num\":0}}]";
+        setTcpNoDelay(true);
+    }
+
+    boolean hears(String[] channels) {
+        for (String ch : channels) {
+            if (ch.equals(channel)) return true;
+            for (String l : listen) if (l.equals(ch)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onOpen(ServerHandshake handshake) {
+        send("42[\"join\",{\"clientId\":\"load-" + id + "\",\"name\":\"Load " + id + "\",\"channel\":\"" + channel
+                + "\",\"listenChannels\":" + jsonArray(listen) + ",\"talkChannels\":" + jsonArray(talk)
+                + ",\"codecs\":[\"pcm\"]}]");
+    }
+
+    @Override
+    public void onMessage(String message) {
+        // Le relais répond au join par channels-init / channel-state
+        if (joined.getCount() > 0 && message.startsWith("42[\"channel")) joined.countDown();
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        long now = System.nanoTime();
+        if (bytes.remaining() < STAMP_BYTES || bytes.getInt(bytes.position()) != MAGIC) return;
+        int from = bytes.getInt(bytes.position() + 4);
+        long s = bytes.getLong(bytes.position() + 8);
+        long sent = bytes.getLong(bytes.position() + 16);
+        Long prev = lastSeq.put(from, s);
+        if (prev != null && s > prev + 1) stats.gaps.addAndGet(s - prev - 1);
+        if (!stats.inWindow(sent)) return;
+        stats.received.incrementAndGet();
+        stats.latency.record((now - sent) / 1000);
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        joined.countDown();
+    }
+
+    @Override
+    public void onError(Exception ex) {
+        stats.errors.incrementAndGet();
+    }
+
+    /** Appelé toutes les 20 ms par le planificateur (toujours le même thread pour ce client). */
+    void tick(boolean shouldTalk) {
+        if (talk.length == 0 || !isOpen()) return;
+        if (shouldTalk != talking) {
+            talking = shouldTalk;
+            for (String ch : talk) send("42[\"" + (talking ? "ptt-start" : "ptt-stop") + "\",{\"channel\":\"" + ch + "\"}]");
+        }
+        if (!talking) return;
+        long now = System.nanoTime();
+        frame.clear();
+        frame.putInt(0, MAGIC).putInt(4, id).putLong(8, seq).putLong(16, now);
+        send(String.format(header, seq, System.currentTimeMillis()));
+        send(frame);
+        seq++;
+        if (stats.inWindow(now)) {
+            stats.framesSent.incrementAndGet();
+            stats.expected.addAndGet(fanOut);
+        }
+    }
+
+    private static String jsonArray(String[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String v : values) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"').append(v).append('"');
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,144 @@
+package com.dewicom;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Assets web (public/) chargés une fois en mémoire au démarrage, avec leur variante gzip
+ * précalculée et un ETag fort (SHA-1 du contenu).
+ *
+ * Les clients revalident à chaque chargement (Cache-Control: no-cache — les noms de fichiers ne
+ * sont pas versionnés, une mise à jour de l'APK doit être vue aussitôt) : une reconnexion ne coûte
+ * qu'un 304 par fichier au lieu du téléchargement complet. Le contenu est immuable une fois chargé.
+ */
+final class AssetCache {
+    private static final String TAG = "AssetCache";
+
+    static final String CACHE_CONTROL = "no-cache";
+
+    /** Un asset : contenu brut, variante gzip (null si elle ne gagne rien) et ETag. */
+    static final class Entry {
+        final String mime;
+        final byte[] identity;
+        final byte[] gzip;
+        final String etag;
+
+        Entry(String mime, byte[] identity, byte[] gzip, String etag) {
+            this.mime = mime; this.identity = identity; this.gzip = gzip; this.etag = etag;
+        }
+
+        /** If-None-Match correspond à cet asset (liste ou "*" ; les ETag faibles W/ sont acceptés). */
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) return false;
+            if (ifNoneMatch.trim().equals("*")) return true;
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                // La variante gzip porte le même ETag suffixé (voir etag(gzip))
+                if (tag.equals(etag) || tag.equals(gzipEtag())) return true;
+            }
+            return false;
+        }
+
+        /** ETag de la variante envoyée : distinct pour gzip, une représentation = un ETag fort. */
+        String etag(boolean gzipped) { return gzipped ? gzipEtag() : etag; }
+
+        private String gzipEtag() { return etag.substring(0, etag.length() - 1) + "-gz\""; }
+    }
+
+    private final Map<String, Entry> entries;
+
+    private AssetCache(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /** Charge récursivement root (ex. "public") ; les URIs sont relatives à root ("/app.js"). */
+    static AssetCache load(AssetSource assets, String root) {
+        Map<String, Entry> map = new HashMap<>();
+        long raw = 0, compressed = 0;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            raw = loadDir(assets, root, "", map, sha1);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            RelayLog.e(TAG, "Chargement des assets incomplet", e);
+        }
+        for (Entry e : map.values()) compressed += e.gzip != null ? e.gzip.length : e.identity.length;
+        RelayLog.d(TAG, map.size() + " assets en mémoire : " + raw / 1024 + " Ko, " + compressed / 1024 + " Ko servis compressés");
+        return new AssetCache(Collections.unmodifiableMap(map));
+    }
+
+    private static long loadDir(AssetSource assets, String root, String rel, Map<String, Entry> map,
+                                MessageDigest sha1) throws IOException {
+        String dir = rel.isEmpty() ? root : root + rel;
+        String[] names = assets.list(dir);
+        long total = 0;
+        if (names == null) return 0;
+        for (String name : names) {
+            String child = rel + "/" + name;
+            // AssetSource (comme AssetManager) ne distingue pas fichiers et dossiers : un dossier a des enfants
+            String[] sub = assets.list(root + child);
+            if (sub != null && sub.length > 0) {
+                total += loadDir(assets, root, child, map, sha1);
+                continue;
+            }
+            byte[] data;
+            try (InputStream is = assets.open(root + child)) {
+                data = readAll(is);
+            }
+            String mime = mimeOf(child);
+            byte[] gz = compressible(mime) ? gzip(data) : null;
+            if (gz != null && gz.length >= data.length) gz = null;
+            map.put(child, new Entry(mime, data, gz, "\"" + hex(sha1.digest(data), 16) + "\""));
+            total += data.length;
+        }
+        return total;
+    }
+
+    /** Asset pour l'URI ("/" → "/index.html"), null si absent. */
+    Entry get(String uri) {
+        return entries.get(uri.equals("/") ? "/index.html" : uri);
+    }
+
+    int size() { return entries.size(); }
+
+    static String mimeOf(String uri) {
+        if (uri.endsWith(".js")) return "application/javascript";
+        if (uri.endsWith(".css")) return "text/css";
+        if (uri.endsWith(".json")) return "application/json";
+        if (uri.endsWith(".png")) return "image/png";
+        return "text/html";
+    }
+
+    private static boolean compressible(String mime) {
+        return !mime.startsWith("image/");
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 1024));
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) > 0) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hex(byte[] digest, int bytes) {
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.dewicom;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lecture des assets web, sur le modèle d'AssetManager : chemins relatifs ("public/app.js"),
+ * list() renvoie les enfants d'un dossier et un tableau vide pour un fichier.
+ */
+public interface AssetSource {
+
+    String[] list(String path) throws IOException;
+
+    InputStream open(String path) throws IOException;
+}
@@ -0,0 +1,72 @@
+package com.dewicom;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Étage codec du relais. Référence : PCM Int16 little-endian 16 kHz mono.
+ *
+ * Une instance = un flux (les encodeurs à état, comme l'ADPCM, continuent d'une trame à la
+ * suivante) ; chaque trame encodée reste décodable seule, une trame perdue n'affecte donc
+ * pas les suivantes. Les ids sont des index denses pour indexer des tableaux par codec.
+ */
+abstract class AudioCodec {
+
+    static final int PCM = 0, MULAW = 1, ADPCM = 2;
+    static final int COUNT = 3;
+    static final String[] NAMES = {"pcm", "mulaw", "adpcm"};
+
+    /** Id du codec nommé s[from, to), ou -1 s'il n'est pas supporté. */
+    static int byName(CharSequence s, int from, int to) {
+        for (int id = 0; id < COUNT; id++) {
+            String n = NAMES[id];
+            if (n.length() != to - from) continue;
+            int i = 0;
+            while (i < n.length() && n.charAt(i) == s.charAt(from + i)) i++;
+            if (i == n.length()) return id;
+        }
+        return -1;
+    }
+
+    static AudioCodec create(int id) {
+        switch (id) {
+            case MULAW: return new MuLawCodec();
+            case ADPCM: return new ImaAdpcmCodec();
+            default:    return new Pcm();
+        }
+    }
+
+    abstract int id();
+
+    /** Taille maximale d'une trame encodée de n échantillons. */
+    abstract int maxEncodedSize(int samples);
+
+    /** Encode pcm[0..n) dans out ; retourne le nombre d'octets écrits. */
+    abstract int encode(short[] pcm, int n, byte[] out);
+
+    /** Décode la trame in (position..limit, non consommée) dans pcm ; retourne le nombre d'échantillons. */
+    abstract int decode(ByteBuffer in, short[] pcm);
+
+    /** Nombre d'échantillons d'une trame encodée de bytes octets. */
+    abstract int decodedSamples(int bytes);
+
+    static final class Pcm extends AudioCodec {
+        @Override int id() { return PCM; }
+        @Override int maxEncodedSize(int samples) { return samples * 2; }
+        @Override int decodedSamples(int bytes) { return bytes / 2; }
+
+        @Override int encode(short[] pcm, int n, byte[] out) {
+            for (int i = 0; i < n; i++) {
+                out[2 * i] = (byte) pcm[i];
+                out[2 * i + 1] = (byte) (pcm[i] >> 8);
+            }
+            return n * 2;
+        }
+
+        @Override int decode(ByteBuffer in, short[] pcm) {
+            int pos = in.position(), n = Math.min(in.remaining() / 2, pcm.length);
+            for (int i = 0; i < n; i++)
+                pcm[i] = (short) (in.get(pos + 2 * i + 1) << 8 | (in.get(pos + 2 * i) & 0xFF));
+            return n;
+        }
+    }
+}
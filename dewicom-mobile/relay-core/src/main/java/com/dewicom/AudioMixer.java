@@ -0,0 +1,204 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixeur mix-minus côté serveur : toutes les 20 ms, additionne pour chaque auditeur les talkers
+ * actifs qu'il entend (sauf sa propre voix) et lui envoie un seul flux PCM Int16 16 kHz.
+ *
+ * Chaque talker alimente une FIFO circulaire (un producteur : le thread relais audio, un consommateur :
+ * le tick). Les buffers de mixage, de conversion et d'envoi sont préalloués ; un limiteur
+ * (gain lissé par auditeur + écrêtage dur) évite la saturation quand plusieurs personnes parlent.
+ */
+final class AudioMixer {
+    private static final String TAG = "AudioMixer";
+
+    static final int SAMPLE_RATE = 16000;
+    static final int TICK_MS = 20;
+    static final int FRAME = SAMPLE_RATE * TICK_MS / 1000; // 320 échantillons
+
+    private static final int FIFO = 4096;                   // 256 ms, puissance de 2
+    private static final int PREFILL = 2 * FRAME;           // 40 ms avant de démarrer un talker
+    private static final int MAX_BACKLOG = 6 * FRAME;       // au-delà, on rattrape le retard
+    private static final float RELEASE = 0.05f;             // remontée du gain du limiteur par tick
+
+    /** Accès au routage et à l'envoi, fournis par le serveur. */
+    interface Sink {
+        RoutingTable routing();
+        void sendMix(WebSocket listener, ByteBuffer pcm);
+    }
+
+    private static final class Talker {
+        final WebSocket ws;
+        final short[] fifo = new short[FIFO];
+        volatile long writePos, readPos;
+        boolean active;
+        final short[] frame = new short[FRAME];
+        Talker(WebSocket ws) { this.ws = ws; }
+    }
+
+    private static final class Mix {
+        final int[] acc = new int[FRAME];
+        float gain = 1f;
+        boolean dirty;
+    }
+
+    private final Sink sink;
+    private final ConcurrentHashMap<WebSocket, Talker> talkers = new ConcurrentHashMap<>();
+    private volatile Talker[] talkerList = new Talker[0];
+    private final ConcurrentHashMap<WebSocket, Mix> mixes = new ConcurrentHashMap<>();
+    private WebSocket[] dirty = new WebSocket[64];
+    private final byte[] out = new byte[FRAME * 2];
+    private final ByteBuffer outBuf = ByteBuffer.wrap(out);
+    private ScheduledExecutorService ticker;
+    private long failedTicks; // thread du mixeur uniquement
+
+    AudioMixer(Sink sink) {
+        this.sink = sink;
+    }
+
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dewicom-mixer");
+            t.setPriority(Thread.MAX_PRIORITY);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tickSafely, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (ticker != null) { ticker.shutdownNow(); ticker = null; }
+    }
+
+    /** PCM Int16 little-endian reçu d'un talker (thread relais audio). */
+    void push(WebSocket ws, ByteBuffer pcm) {
+        Talker t = talkers.get(ws);
+        if (t == null && (t = addTalker(ws)) == null) return;
+        int pos = pcm.position();
+        int n = pcm.remaining() / 2;
+        long w = t.writePos;
+        int room = FIFO - (int) (w - t.readPos);
+        if (n > room) n = room; // FIFO pleine : l'excédent est perdu
+        for (int i = 0; i < n; i++) {
+            int lo = pcm.get(pos + 2 * i) & 0xFF, hi = pcm.get(pos + 2 * i + 1);
+            t.fifo[(int) (w + i) & (FIFO - 1)] = (short) (hi << 8 | lo);
+        }
+        t.writePos = w + n;
+    }
+
+    /** Retire un socket fermé ; appelé hors du thread relais, d'où le verrou partagé avec addTalker. */
+    synchronized void remove(WebSocket ws) {
+        mixes.remove(ws);
+        if (talkers.remove(ws) != null) {
+            Talker[] list = talkerList;
+            int n = 0;
+            Talker[] next = new Talker[list.length - 1];
+            for (Talker t : list) if (t.ws != ws && n < next.length) next[n++] = t;
+            talkerList = next;
+        }
+    }
+
+    /** null si le socket est déjà fermé (une trame en vol ne doit pas recréer un talker retiré). */
+    private synchronized Talker addTalker(WebSocket ws) {
+        Talker t = talkers.get(ws);
+        if (t != null) return t;
+        if (!ws.isOpen()) return null;
+        t = new Talker(ws);
+        talkers.put(ws, t);
+        Talker[] list = Arrays.copyOf(talkerList, talkerList.length + 1);
+        list[list.length - 1] = t;
+        talkerList = list;
+        return t;
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // Un tick raté ne doit pas arrêter le mixeur ; journal limité (un tick toutes les 20 ms)
+            if (failedTicks++ % 250 == 0) RelayLog.e(TAG, "Tick du mixeur en échec (" + failedTicks + " au total)", e);
+        }
+    }
+
+    void tick() {
+        RoutingTable rt = sink.routing();
+        int dirtyCount = 0;
+        for (Talker t : talkerList) {
+            if (!pull(t)) continue;
+            for (WebSocket dest : rt.recipients(t.ws)) {
+                if (dest == t.ws) continue; // mix-minus : jamais sa propre voix
+                // Snapshot antérieur au départ de dest : ne pas recréer le Mix retiré par remove()
+                if (!dest.isOpen()) continue;
+                Mix m = mixes.get(dest);
+                if (m == null) { m = new Mix(); mixes.put(dest, m); }
+                if (!m.dirty) {
+                    Arrays.fill(m.acc, 0);
+                    m.dirty = true;
+                    if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+                    dirty[dirtyCount++] = dest;
+                }
+                int[] acc = m.acc;
+                short[] f = t.frame;
+                for (int i = 0; i < FRAME; i++) acc[i] += f[i];
+            }
+        }
+        for (int d = 0; d < dirtyCount; d++) {
+            WebSocket dest = dirty[d];
+            dirty[d] = null;
+            Mix m = mixes.get(dest);
+            if (m == null) continue;
+            m.dirty = false;
+            if (!dest.isOpen()) continue;
+            limit(m);
+            outBuf.clear();
+            sink.sendMix(dest, outBuf);
+        }
+    }
+
+    /** Extrait une trame de 20 ms de la FIFO du talker ; false s'il n'a rien à dire. */
+    private boolean pull(Talker t) {
+        long r = t.readPos;
+        int avail = (int) (t.writePos - r);
+        if (!t.active) {
+            if (avail < PREFILL) return false;
+            t.active = true;
+        }
+        if (avail > MAX_BACKLOG) { r += avail - PREFILL; avail = PREFILL; } // rattrape le retard accumulé
+        int n = Math.min(avail, FRAME);
+        for (int i = 0; i < n; i++) t.frame[i] = t.fifo[(int) (r + i) & (FIFO - 1)];
+        if (n < FRAME) {
+            Arrays.fill(t.frame, n, FRAME, (short) 0);
+            t.active = false; // sous-alimentation : re-prefill avant de reprendre
+        }
+        t.readPos = r + n;
+        return n > 0;
+    }
+
+    /** Limiteur : gain lissé (attaque immédiate, relâche progressive) puis écrêtage, vers out[]. */
+    private void limit(Mix m) {
+        int[] acc = m.acc;
+        int peak = 0;
+        for (int i = 0; i < FRAME; i++) {
+            int a = acc[i] < 0 ? -acc[i] : acc[i];
+            if (a > peak) peak = a;
+        }
+        float target = peak > Short.MAX_VALUE ? (float) Short.MAX_VALUE / peak : 1f;
+        m.gain = target < m.gain ? target : Math.min(target, m.gain + RELEASE);
+        float g = m.gain;
+        for (int i = 0; i < FRAME; i++) {
+            int s = g == 1f ? acc[i] : (int) (acc[i] * g);
+            if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+            else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+            out[2 * i] = (byte) s;
+            out[2 * i + 1] = (byte) (s >> 8);
+        }
+    }
+}
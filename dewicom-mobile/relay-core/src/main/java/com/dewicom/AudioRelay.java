@@ -0,0 +1,145 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Plan de données : les threads décodeurs de Java-WebSocket déposent les trames audio dans un
+ * anneau borné de tâches préallouées, vidé par un unique thread relais haute priorité (routage
+ * par codec, transcodage, mixage, envoi). Les événements de contrôle passent par un autre
+ * exécuteur : une rafale de joins ne retarde jamais l'audio.
+ *
+ * Plusieurs décodeurs produisent (un par groupe de connexions) : l'ajout se fait sous un verrou
+ * court, sans allocation ; le consommateur traite la tâche hors verrou puis libère l'emplacement.
+ * Anneau plein : la trame est abandonnée et comptée (l'audio en retard n'a plus de valeur).
+ */
+final class AudioRelay {
+    private static final String TAG = "AudioRelay";
+    private static final int CAPACITY = 1024; // puissance de 2
+
+    /** Trame en attente de relais ; les champs sont figés par le producteur avant publication. */
+    static final class Job {
+        WebSocket ws;
+        ClientSession session;
+        /** Destinataires par route (trame binaire) ou à plat (texte base64). */
+        WebSocket[][] dests;
+        WebSocket[] textDests;
+        /** Canaux parlés de la trame, en index ChannelRegistry (groupes multicast, métriques par canal). */
+        int[] channels;
+        int codec;
+        ByteBuffer payload;
+        String text;
+        long seq, captureTs;
+        long enqueuedNanos;
+
+        void clear() {
+            ws = null; session = null; dests = null; textDests = null; channels = null; payload = null; text = null;
+        }
+    }
+
+    interface Handler {
+        void handle(Job job);
+    }
+
+    final PlaneStats stats = new PlaneStats();
+    private final Handler handler;
+    private final Job[] ring = new Job[CAPACITY];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long head, tail; // sous lock
+    private Thread thread;
+    private volatile boolean running;
+
+    AudioRelay(Handler handler) {
+        this.handler = handler;
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Job();
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this::drain, "dewicom-audio");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) { thread.interrupt(); thread = null; }
+    }
+
+    int depth() {
+        lock.lock();
+        try { return (int) (tail - head); } finally { lock.unlock(); }
+    }
+
+    /** Trame binaire ; seq et captureTs figés par le séquenceur du talker à l'acceptation de la trame. */
+    boolean offerFrame(WebSocket ws, ClientSession session, WebSocket[][] dests, int[] channels, int codec,
+                       long seq, long captureTs, ByteBuffer payload) {
+        lock.lock();
+        try {
+            Job j = claim();
+            if (j == null) return false;
+            j.ws = ws; j.session = session; j.dests = dests; j.channels = channels; j.codec = codec; j.payload = payload;
+            j.seq = seq; j.captureTs = captureTs;
+            publish();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ancien format audio texte (base64), relayé tel quel. */
+    boolean offerText(WebSocket ws, ClientSession session, WebSocket[] dests, int[] channels, String text) {
+        lock.lock();
+        try {
+            Job j = claim();
+            if (j == null) return false;
+            j.ws = ws; j.session = session; j.textDests = dests; j.channels = channels; j.text = text;
+            publish();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Job claim() {
+        if (tail - head == CAPACITY) { stats.dropped.incrementAndGet(); return null; }
+        Job j = ring[(int) tail & (CAPACITY - 1)];
+        j.enqueuedNanos = System.nanoTime();
+        return j;
+    }
+
+    private void publish() {
+        tail++;
+        stats.queued((int) (tail - head));
+        notEmpty.signal();
+    }
+
+    private void drain() {
+        while (running) {
+            Job j;
+            lock.lock();
+            try {
+                while (head == tail) notEmpty.await();
+                j = ring[(int) head & (CAPACITY - 1)];
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            stats.started(System.nanoTime() - j.enqueuedNanos);
+            try {
+                handler.handle(j);
+            } catch (RuntimeException e) {
+                RelayLog.e(TAG, "Erreur relais audio", e);
+            }
+            j.clear();
+            lock.lock();
+            try { head++; } finally { lock.unlock(); }
+        }
+    }
+}
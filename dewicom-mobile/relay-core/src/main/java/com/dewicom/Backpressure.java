@@ -0,0 +1,63 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contre-pression par destinataire sur l'audio sortant.
+ *
+ * Java-WebSocket met en file sans limite (WebSocketImpl.outQueue, un tampon par trame WebSocket) :
+ * un client derrière un AP faible accumulerait de l'audio en mémoire sur le téléphone hôte et le
+ * recevrait avec des secondes de retard. On regarde la profondeur de sa file avant chaque envoi
+ * audio : au-delà de THIN on n'envoie qu'une trame sur deux, au-delà de SHED plus aucune, jusqu'à
+ * ce que la file redescende sous THIN / 2. Les événements de contrôle (ptt-state, channel-state…)
+ * ne passent pas par ici et restent toujours envoyés ; les autres clients ne sont pas affectés.
+ */
+final class Backpressure {
+    private static final String TAG = "Backpressure";
+
+    /** Tampons en attente (≈ 2 par trame audio : en-tête + pièce jointe). */
+    static final int THIN = 16;
+    static final int SHED = 48;
+
+    /** État de délestage d'un destinataire, porté par sa ClientSession. */
+    static final class State {
+        volatile boolean shedding;
+        final AtomicLong shedFrames = new AtomicLong();
+        private int thinToggle;
+    }
+
+    private Backpressure() {}
+
+    /** Profondeur de la file sortante de ws (0 si inconnue). */
+    static int queued(WebSocket ws) {
+        return ws instanceof WebSocketImpl ? ((WebSocketImpl) ws).outQueue.size() : 0;
+    }
+
+    /** true si une trame audio peut être mise en file pour dest, false si elle doit être abandonnée. */
+    static boolean admitAudio(WebSocket dest) {
+        ClientSession session = dest.getAttachment();
+        if (session == null) return true;
+        State st = session.outbound;
+        int queued = queued(dest);
+        if (st.shedding) {
+            if (queued > THIN / 2) { st.shedFrames.incrementAndGet(); return false; }
+            st.shedding = false;
+            RelayLog.i(TAG, "Fin de délestage audio " + dest.getRemoteSocketAddress() + " (" + st.shedFrames.get() + " trames abandonnées)");
+            return true;
+        }
+        if (queued >= SHED) {
+            st.shedding = true;
+            st.shedFrames.incrementAndGet();
+            RelayLog.w(TAG, "Délestage audio " + dest.getRemoteSocketAddress() + " : " + queued + " tampons en attente");
+            return false;
+        }
+        if (queued >= THIN && (++st.thinToggle & 1) == 0) {
+            st.shedFrames.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package com.dewicom;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.NanoHTTPD.IHTTPSession;
+import fi.iki.elonen.NanoHTTPD.Response;
+
+/**
+ * /api/channels : administration du registre de canaux à l'exécution.
+ *
+ *   GET    /api/channels            liste [{"id","name","color"}]
+ *   POST   /api/channels            création (id, name, color — formulaire ou paramètres d'URL)
+ *   POST   /api/channels/{id}       renommage (name et/ou color)
+ *   DELETE /api/channels/{id}       suppression (membres replacés sur le premier canal)
+ *
+ * Après chaque modification réussie, onChange republie le routage et notifie les clients.
+ *
+ * Les modifications ne sont acceptées que depuis l'hôte lui-même (loopback : UI hôte, curl sur le
+ * serveur dédié), sans en-tête CORS, et refusées si elles viennent d'une page d'une autre origine :
+ * une page ouverte par un équipier sur le réseau de la salle ne peut pas supprimer un canal.
+ */
+final class ChannelApi {
+    private static final String TAG = "ChannelApi";
+    static final String PREFIX = "/api/channels";
+
+    private final ChannelRegistry registry;
+    private final Runnable onChange;
+
+    ChannelApi(ChannelRegistry registry, Runnable onChange) {
+        this.registry = registry;
+        this.onChange = onChange;
+    }
+
+    static boolean handles(String uri) {
+        return uri.equals(PREFIX) || uri.startsWith(PREFIX + "/");
+    }
+
+    Response serve(IHTTPSession session) {
+        String uri = session.getUri();
+        String id = uri.length() > PREFIX.length() + 1 ? uri.substring(PREFIX.length() + 1) : null;
+        NanoHTTPD.Method method = session.getMethod();
+        try {
+            if (method == NanoHTTPD.Method.GET && id == null)
+                return json(Response.Status.OK, registry.defs().json(), true);
+            if (!fromHost(session))
+                return json(Response.Status.FORBIDDEN, error("Modification réservée à l'hôte du relais"), false);
+            ChannelRegistry.Channel c;
+            if (method == NanoHTTPD.Method.POST) {
+                Map<String, String> params = params(session);
+                c = id == null
+                        ? registry.create(params.get("id"), params.get("name"), params.get("color"))
+                        : registry.rename(id, params.get("name"), params.get("color"));
+            } else if (method == NanoHTTPD.Method.DELETE && id != null) {
+                c = registry.delete(id);
+            } else {
+                return json(Response.Status.METHOD_NOT_ALLOWED, error("Méthode non prise en charge"), false);
+            }
+            RelayLog.i(TAG, method + " " + c.id + " (index " + c.index + ")");
+            onChange.run();
+            return json(id == null ? Response.Status.CREATED : Response.Status.OK,
+                    "{\"id\":\"" + c.id + "\",\"index\":" + c.index + ",\"name\":\"" + c.name + "\",\"color\":\"" + c.color + "\"}", false);
+        } catch (IllegalArgumentException e) {
+            return json(Response.Status.BAD_REQUEST, error(e.getMessage()), false);
+        } catch (IOException | NanoHTTPD.ResponseException e) {
+            RelayLog.e(TAG, "Erreur " + uri, e);
+            return json(Response.Status.INTERNAL_ERROR, error(String.valueOf(e.getMessage())), false);
+        }
+    }
+
+    /**
+     * Requête émise sur l'hôte (adresse de loopback, pas l'en-tête remote-addr que le client peut
+     * fournir) et, si un navigateur l'a envoyée, depuis une page servie par le relais en local.
+     */
+    private static boolean fromHost(IHTTPSession session) {
+        String ip = session.getRemoteIpAddress();
+        if (ip == null || !(ip.equals("127.0.0.1") || ip.equals("::1") || ip.equals("0:0:0:0:0:0:0:1"))) return false;
+        String origin = session.getHeaders().get("origin");
+        return origin == null || origin.matches("https?://(127\\.0\\.0\\.1|localhost)(:\\d+)?");
+    }
+
+    /** Paramètres du corps (application/x-www-form-urlencoded) et de l'URL, première valeur. */
+    private static Map<String, String> params(IHTTPSession session) throws IOException, NanoHTTPD.ResponseException {
+        session.parseBody(new HashMap<>());
+        Map<String, String> out = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : session.getParameters().entrySet())
+            if (!e.getValue().isEmpty()) out.put(e.getKey(), e.getValue().get(0));
+        return out;
+    }
+
+    private static String error(String msg) {
+        return "{\"error\":\"" + msg.replace("\"", "'") + "\"}";
+    }
+
+    /** cors : lecture seule uniquement, les modifications ne sont pas ouvertes aux autres origines. */
+    private static Response json(Response.Status status, String body, boolean cors) {
+        Response r = NanoHTTPD.newFixedLengthResponse(status, "application/json", body);
+        if (cors) r.addHeader("Access-Control-Allow-Origin", "*");
+        r.addHeader("Cache-Control", "no-store");
+        return r;
+    }
+}
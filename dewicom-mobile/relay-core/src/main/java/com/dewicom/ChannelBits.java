@@ -0,0 +1,77 @@
+package com.dewicom;
+
+import java.nio.LongBuffer;
+
+/**
+ * Ensembles de canaux en bitsets : WORDS mots long indexés par l'index dense du canal
+ * (ChannelRegistry, MAX_CHANNELS au plus). Appartenance et intersection se testent par quelques
+ * ET binaires, sans branchement par canal ni allocation. Les tableaux ne sont jamais modifiés
+ * une fois construits.
+ */
+final class ChannelBits {
+
+    static final int WORDS = (ChannelRegistry.MAX_CHANNELS + 63) >>> 6;
+    static final long[] NONE = new long[WORDS];
+
+    private ChannelBits() {}
+
+    static long[] of(int... channels) {
+        long[] bits = new long[WORDS];
+        for (int ch : channels) bits[ch >>> 6] |= 1L << ch;
+        return bits;
+    }
+
+    static boolean has(long[] bits, int ch) {
+        return ch >= 0 && (bits[ch >>> 6] & (1L << ch)) != 0;
+    }
+
+    static boolean isEmpty(long[] bits) {
+        long x = 0;
+        for (int w = 0; w < WORDS; w++) x |= bits[w];
+        return x == 0;
+    }
+
+    static boolean intersects(long[] a, long[] b) {
+        return intersects(a, 0, b);
+    }
+
+    /** a[offset, offset + WORDS) ∩ b non vide — a peut regrouper les bitsets de plusieurs utilisateurs. */
+    static boolean intersects(long[] a, int offset, long[] b) {
+        long x = 0;
+        for (int w = 0; w < WORDS; w++) x |= a[offset + w] & b[w];
+        return x != 0;
+    }
+
+    static long[] or(long[] a, long[] b) {
+        long[] bits = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) bits[w] = a[w] | b[w];
+        return bits;
+    }
+
+    /** Index des canaux présents, croissants. */
+    static int[] indices(long[] bits) {
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) n += Long.bitCount(bits[w]);
+        int[] out = new int[n];
+        int k = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long x = bits[w]; x != 0; x &= x - 1) out[k++] = (w << 6) + Long.numberOfTrailingZeros(x);
+        }
+        return out;
+    }
+
+    /** Canaux de bits toujours présents dans to (même id au même index) : un index libéré puis réattribué est écarté. */
+    static long[] retain(long[] bits, ChannelRegistry.Defs from, ChannelRegistry.Defs to) {
+        long[] out = bits.clone();
+        for (int ch : indices(bits)) {
+            ChannelRegistry.Channel before = from.at(ch), after = to.at(ch);
+            if (before == null || after == null || !before.id.equals(after.id)) out[ch >>> 6] &= ~(1L << ch);
+        }
+        return out;
+    }
+
+    /** Clé de HashMap sur le contenu (equals/hashCode de LongBuffer) : talkers aux mêmes canaux parlés. */
+    static Object key(long[] bits) {
+        return LongBuffer.wrap(bits);
+    }
+}
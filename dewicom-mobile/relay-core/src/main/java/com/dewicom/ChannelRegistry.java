@@ -0,0 +1,241 @@
+package com.dewicom;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canaux du relais, modifiables à l'exécution (création, renommage, suppression) et persistés
+ * dans le dossier de données (CHANNELS_FILE, une ligne "index\tid\tnom\tcouleur" par canal,
+ * l'index persisté garde les mêmes groupes multicast d'un démarrage à l'autre).
+ *
+ * Chaque canal reçoit un index dense, réutilisé après suppression : tables de membres, compteurs
+ * et groupes multicast sont des tableaux indexés par canal, le routage ne hache plus d'identifiant.
+ * L'id texte (protocole client) n'est résolu en index qu'aux événements de contrôle. Les
+ * définitions sont publiées en snapshots immuables (Defs) ; les modifications sont sérialisées.
+ */
+final class ChannelRegistry {
+    private static final String TAG = "ChannelRegistry";
+
+    static final String CHANNELS_FILE = "channels.txt";
+    /** Au-delà, création refusée (groupes multicast 239.255.77.1-255, tables de routage). */
+    static final int MAX_CHANNELS = 128;
+
+    /** Un canal : index dense, id du protocole (immuable), nom affiché et couleur (renommables). */
+    static final class Channel {
+        final int index;
+        final String id, name, color;
+
+        Channel(int index, String id, String name, String color) {
+            this.index = index; this.id = id; this.name = name; this.color = color;
+        }
+    }
+
+    /** Définitions à un instant donné : byIndex peut contenir des trous (index libérés). */
+    static final class Defs {
+        final Channel[] byIndex;
+        private final Map<String, Channel> byId;
+        /** Ordre d'affichage (ordre de création). */
+        private final Channel[] ordered;
+
+        private Defs(List<Channel> ordered) {
+            int slots = 0;
+            for (Channel c : ordered) slots = Math.max(slots, c.index + 1);
+            this.byIndex = new Channel[slots];
+            Map<String, Channel> ids = new HashMap<>();
+            for (Channel c : ordered) { byIndex[c.index] = c; ids.put(c.id, c); }
+            this.byId = Collections.unmodifiableMap(ids);
+            this.ordered = ordered.toArray(new Channel[0]);
+        }
+
+        /** Nombre d'index (tableaux indexés par canal), trous compris. */
+        int slots() { return byIndex.length; }
+
+        int size() { return ordered.length; }
+
+        Channel get(String id) { return id != null ? byId.get(id) : null; }
+
+        /** Index du canal id, -1 s'il n'existe pas. */
+        int indexOf(String id) {
+            Channel c = get(id);
+            return c != null ? c.index : -1;
+        }
+
+        /** Index des ids[0..count) connus, dans l'ordre (ids inconnus ignorés). */
+        int[] indices(String[] ids, int count) {
+            int[] out = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int ch = indexOf(ids[i]);
+                if (ch >= 0) out[n++] = ch;
+            }
+            return n == count ? out : Arrays.copyOf(out, n);
+        }
+
+        /** Bitset (ChannelBits) des ids[0..count) connus. */
+        long[] bits(String[] ids, int count) {
+            long[] bits = new long[ChannelBits.WORDS];
+            for (int i = 0; i < count; i++) {
+                int ch = indexOf(ids[i]);
+                if (ch >= 0) bits[ch >>> 6] |= 1L << ch;
+            }
+            return bits;
+        }
+
+        /** Canal d'index i, null si libre. */
+        Channel at(int i) { return i >= 0 && i < byIndex.length ? byIndex[i] : null; }
+
+        /** Canal de repli (utilisateurs d'un canal supprimé ou inconnu). */
+        Channel first() { return ordered[0]; }
+
+        Channel[] ordered() { return ordered.clone(); }
+
+        /** [{"id","name","color"}] dans l'ordre d'affichage — "channels-init". */
+        String json() {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < ordered.length; i++) {
+                Channel c = ordered[i];
+                if (i > 0) sb.append(',');
+                sb.append("{\"id\":\"").append(c.id).append("\",\"name\":\"").append(c.name)
+                  .append("\",\"color\":\"").append(c.color).append("\"}");
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    /** Canaux par défaut (premier démarrage ou fichier illisible). */
+    static final Defs DEFAULTS = new Defs(Arrays.asList(
+            new Channel(0, "general", "Général", "#6b7280"), new Channel(1, "foh", "FOH Son", "#3b82f6"),
+            new Channel(2, "plateau", "Plateau", "#f97316"), new Channel(3, "lumiere", "Lumière", "#a855f7"),
+            new Channel(4, "regie", "Régie", "#22c55e")));
+
+    private final File file;
+    private volatile Defs defs;
+
+    /** file null : registre en mémoire seulement. */
+    ChannelRegistry(File file) {
+        this.file = file;
+        Defs loaded = file != null ? load(file) : null;
+        this.defs = loaded != null ? loaded : DEFAULTS;
+    }
+
+    Defs defs() { return defs; }
+
+    /** Nouveau canal au premier index libre ; IllegalArgumentException si l'id est pris ou invalide. */
+    synchronized Channel create(String id, String name, String color) throws IOException {
+        Defs d = defs;
+        checkId(id);
+        if (d.get(id) != null) throw new IllegalArgumentException("Canal déjà existant: " + id);
+        if (d.size() >= MAX_CHANNELS) throw new IllegalArgumentException("Trop de canaux (" + MAX_CHANNELS + " au plus)");
+        int index = 0;
+        while (d.at(index) != null) index++;
+        Channel c = new Channel(index, id, checkName(name != null ? name : id), checkColor(color != null ? color : "#6b7280"));
+        List<Channel> next = new ArrayList<>(Arrays.asList(d.ordered));
+        next.add(c);
+        publish(new Defs(next));
+        return c;
+    }
+
+    /** Nouveau nom et/ou nouvelle couleur (null : inchangé) ; l'id et l'index restent. */
+    synchronized Channel rename(String id, String name, String color) throws IOException {
+        Defs d = defs;
+        Channel old = require(d, id);
+        Channel c = new Channel(old.index, old.id, name != null ? checkName(name) : old.name, color != null ? checkColor(color) : old.color);
+        List<Channel> next = new ArrayList<>(Arrays.asList(d.ordered));
+        next.set(next.indexOf(old), c);
+        publish(new Defs(next));
+        return c;
+    }
+
+    /** Supprime le canal ; son index sera réutilisé. Le dernier canal ne peut pas être supprimé. */
+    synchronized Channel delete(String id) throws IOException {
+        Defs d = defs;
+        Channel old = require(d, id);
+        if (d.size() == 1) throw new IllegalArgumentException("Impossible de supprimer le dernier canal");
+        List<Channel> next = new ArrayList<>(Arrays.asList(d.ordered));
+        next.remove(old);
+        publish(new Defs(next));
+        return old;
+    }
+
+    private static Channel require(Defs d, String id) {
+        Channel c = d.get(id);
+        if (c == null) throw new IllegalArgumentException("Canal inconnu: " + id);
+        return c;
+    }
+
+    private static String checkId(String id) {
+        if (id == null || !id.matches("[a-z0-9_-]{1,32}")) throw new IllegalArgumentException("Id invalide (a-z, 0-9, _ et -, 32 caractères au plus)");
+        return id;
+    }
+
+    // Noms concaténés tels quels dans le JSON envoyé aux clients : ni guillemet, ni antislash, ni contrôle
+    private static String checkName(String name) {
+        String n = name.trim();
+        if (n.isEmpty() || n.length() > 40 || !n.matches("[^\"\\\\\\p{Cntrl}]+")) throw new IllegalArgumentException("Nom invalide");
+        return n;
+    }
+
+    private static String checkColor(String color) {
+        if (!color.matches("#[0-9a-fA-F]{6}")) throw new IllegalArgumentException("Couleur invalide (#rrggbb)");
+        return color;
+    }
+
+    /** Écrit le fichier (remplacé d'un bloc) puis publie : un échec laisse l'état précédent. */
+    private void publish(Defs next) throws IOException {
+        if (file != null) save(file, next);
+        defs = next;
+    }
+
+    private static void save(File file, Defs d) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Dossier inaccessible: " + dir);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Channel c : d.ordered) w.write(c.index + "\t" + c.id + "\t" + c.name + "\t" + c.color + "\n");
+        }
+        if (!tmp.renameTo(file)) {
+            // renameTo ne remplace pas toujours un fichier existant (selon le système de fichiers)
+            if (!file.delete() || !tmp.renameTo(file)) throw new IOException("Écriture impossible: " + file);
+        }
+    }
+
+    /** null si le fichier est absent, vide ou invalide (canaux par défaut). */
+    private static Defs load(File file) {
+        if (!file.isFile()) return null;
+        List<Channel> list = new ArrayList<>();
+        Map<String, Boolean> ids = new HashMap<>();
+        boolean[] used = new boolean[MAX_CHANNELS];
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] f = line.split("\t", -1);
+                if (f.length != 4) throw new IOException("Ligne invalide: " + line);
+                int index = Integer.parseInt(f[0]);
+                if (index < 0 || index >= MAX_CHANNELS || used[index] || ids.put(f[1], true) != null)
+                    throw new IOException("Ligne invalide: " + line);
+                used[index] = true;
+                list.add(new Channel(index, checkId(f[1]), checkName(f[2]), checkColor(f[3])));
+            }
+        } catch (IOException | RuntimeException e) {
+            RelayLog.w(TAG, "Canaux illisibles dans " + file + ", canaux par défaut", e);
+            return null;
+        }
+        if (list.isEmpty()) return null;
+        RelayLog.d(TAG, list.size() + " canaux chargés depuis " + file);
+        return new Defs(list);
+    }
+}
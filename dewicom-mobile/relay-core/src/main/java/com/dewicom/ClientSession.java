@@ -0,0 +1,202 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * État propre à une connexion WebSocket, attaché au socket (WebSocket.setAttachment).
+ * Java-WebSocket traite les messages d'une connexion sur un seul thread décodeur à la fois :
+ * les objets réutilisables ci-dessous n'ont donc pas besoin de synchronisation.
+ */
+final class ClientSession {
+    final SocketIoEvent event;
+    /** Partagé avec le thread de réception UDP : synchronisé (FrameSequencer). */
+    final FrameSequencer sequencer = new FrameSequencer();
+    /** Délestage audio sortant vers ce client (Backpressure). */
+    final Backpressure.State outbound = new Backpressure.State();
+    private final StringBuilder header = new StringBuilder(128);
+    /** Jeton d'enregistrement UDP remis au join (0 : pas de transport UDP). */
+    volatile int udpToken;
+    /** Création de la session, à l'acceptation TCP (SessionSocketFactory) : mesure de la poignée de main. */
+    final long createdNanos = System.nanoTime();
+
+    // Événement binaire Socket.IO en cours de réassemblage ("45<n>-[...]" suivi de n trames binaires)
+    String pendingHeader;
+    /** Destinataires par route (RoutingTable.recipientsByCodec), null si l'événement n'est pas relayé. */
+    WebSocket[][] pendingDests;
+    /** Canaux parlés (index) de l'événement en attente (émission multicast). */
+    int[] pendingChannels;
+    int pendingCodec;
+    /** Séquence et capture figées à l'acceptation de l'en-tête (FrameSequencer). */
+    long pendingSeq, pendingCaptureTs;
+    ByteBuffer[] pendingAttachments = new ByteBuffer[1];
+    int pendingExpected, pendingReceived;
+
+    // audio-chunk director aux talkChannels différents des canaux enregistrés : canaux et destinataires
+    // résolus une fois par snapshot de routage et liste d'ids, réutilisés ensuite trame après trame
+    private RoutingTable adHocRouting;
+    private String[] adHocIds;
+    private int[] adHocTalk;
+    private WebSocket[] adHocDests;
+    private WebSocket[][] adHocDestsByCodec;
+
+    // Étage codec (thread relais audio uniquement) : la trame source est décodée une seule fois, puis
+    // réencodée une fois par codec cible (encodeurs à état propres à ce flux). Les tampons sont réutilisés :
+    // sendFrame copie la charge utile, ils peuvent donc être réécrits dès le retour de l'envoi.
+    private static final AudioCodec[] DECODERS = new AudioCodec[AudioCodec.COUNT];
+    static {
+        for (int c = 0; c < AudioCodec.COUNT; c++) DECODERS[c] = AudioCodec.create(c);
+    }
+    private short[] pcm = new short[1024];
+    private int pcmSamples = -1;
+    private final AudioCodec[] encoders = new AudioCodec[AudioCodec.COUNT];
+    private final byte[][] encoded = new byte[AudioCodec.COUNT][];
+    private final ByteBuffer[] encodedBufs = new ByteBuffer[AudioCodec.COUNT];
+    private final int[] encodedLen = new int[AudioCodec.COUNT];
+    // Codecs déjà encodés pour la trame courante (bit par codec) : un encodeur à état ne tourne qu'une fois
+    private int encodedMask;
+
+    // Flux mixé vers cet auditeur : encodé sur le thread du mixeur uniquement
+    private AudioCodec mixEncoder;
+    private byte[] mixOut;
+    private ByteBuffer mixOutBuf;
+    private final short[] mixFrame = new short[AudioMixer.FRAME];
+
+    ClientSession(StringInterner channelIds) {
+        this.event = new SocketIoEvent(channelIds);
+    }
+
+    /** Ouvre le réassemblage d'un événement binaire ; dests == null si l'événement n'est pas relayé. */
+    void expectAttachments(String header, int count, WebSocket[][] dests, int[] channels, int codec,
+                           long seq, long captureTs) {
+        if (pendingAttachments.length < count) pendingAttachments = new ByteBuffer[count];
+        pendingHeader = header;
+        pendingDests = dests;
+        pendingChannels = channels;
+        pendingCodec = codec;
+        pendingSeq = seq;
+        pendingCaptureTs = captureTs;
+        pendingExpected = count;
+        pendingReceived = 0;
+    }
+
+    /** Canaux parlés ad hoc ids[0..count) résolus dans rt ; même instance tant que rt et les ids ne changent pas. */
+    int[] adHocTalk(RoutingTable rt, String[] ids, int count) {
+        if (rt != adHocRouting || !sameIds(ids, count)) {
+            adHocRouting = rt;
+            adHocIds = Arrays.copyOf(ids, count);
+            adHocTalk = rt.channels.indices(ids, count);
+            adHocDests = null;
+            adHocDestsByCodec = null;
+        }
+        return adHocTalk;
+    }
+
+    /** Destinataires des canaux du dernier adHocTalk, calculés à la première trame. */
+    WebSocket[] adHocRecipients() {
+        if (adHocDests == null) adHocDests = adHocRouting.recipients(adHocTalk);
+        return adHocDests;
+    }
+
+    WebSocket[][] adHocRecipientsByCodec() {
+        if (adHocDestsByCodec == null) adHocDestsByCodec = adHocRouting.recipientsByCodec(adHocTalk);
+        return adHocDestsByCodec;
+    }
+
+    // Ids internés (StringInterner) : equals se résout presque toujours par la comparaison de références
+    private boolean sameIds(String[] ids, int count) {
+        if (adHocIds == null || adHocIds.length != count) return false;
+        for (int i = 0; i < count; i++) if (!adHocIds[i].equals(ids[i])) return false;
+        return true;
+    }
+
+    boolean awaitingAttachment() {
+        return pendingReceived < pendingExpected;
+    }
+
+    /** Ajoute une pièce jointe ; retourne true quand l'événement est complet. */
+    boolean addAttachment(ByteBuffer buf) {
+        pendingAttachments[pendingReceived++] = buf;
+        return pendingReceived == pendingExpected;
+    }
+
+    void clearPending() {
+        for (int i = 0; i < pendingReceived; i++) pendingAttachments[i] = null;
+        pendingHeader = null;
+        pendingDests = null;
+        pendingChannels = null;
+        pendingExpected = pendingReceived = 0;
+    }
+
+    /** En-tête binaire audio-chunk horodaté (séquence et capture figées à la réception). */
+    String audioHeader(int codec, long seq, long captureTs) {
+        header.setLength(0);
+        header.append("451-[\"audio-chunk\",{\"codec\":\"").append(AudioCodec.NAMES[codec])
+              .append("\",\"seq\":").append(seq)
+              .append(",\"ts\":").append(captureTs)
+              .append(",\"chunk\":{\"_placeholder\":true,\"num\":0}}]");
+        return header.toString();
+    }
+
+    /** Nouvelle trame source : le PCM décodé de la précédente n'est plus valable. */
+    void beginFrame() {
+        pcmSamples = -1;
+        encodedMask = 0;
+    }
+
+    /** Trame src (codec srcCodec, non consommée) réencodée en dstCodec ; valable jusqu'au prochain appel. */
+    ByteBuffer transcode(ByteBuffer src, int srcCodec, int dstCodec) {
+        if ((encodedMask & (1 << dstCodec)) != 0) {
+            ByteBuffer out = encodedBufs[dstCodec];
+            out.clear();
+            out.limit(encodedLen[dstCodec]);
+            return out;
+        }
+        decodeOnce(src, srcCodec);
+        AudioCodec enc = encoders[dstCodec];
+        if (enc == null) enc = encoders[dstCodec] = AudioCodec.create(dstCodec);
+        int max = enc.maxEncodedSize(pcmSamples);
+        if (encoded[dstCodec] == null || encoded[dstCodec].length < max) {
+            encoded[dstCodec] = new byte[max];
+            encodedBufs[dstCodec] = ByteBuffer.wrap(encoded[dstCodec]);
+        }
+        int n = enc.encode(pcm, pcmSamples, encoded[dstCodec]);
+        encodedLen[dstCodec] = n;
+        encodedMask |= 1 << dstCodec;
+        ByteBuffer out = encodedBufs[dstCodec];
+        out.clear();
+        out.limit(n);
+        return out;
+    }
+
+    /** PCM Int16 LE de la trame src (src elle-même si elle est déjà en PCM). */
+    ByteBuffer toPcm(ByteBuffer src, int srcCodec) {
+        return srcCodec == AudioCodec.PCM ? src : transcode(src, srcCodec, AudioCodec.PCM);
+    }
+
+    private void decodeOnce(ByteBuffer src, int srcCodec) {
+        if (pcmSamples >= 0) return;
+        AudioCodec dec = DECODERS[srcCodec];
+        int need = dec.decodedSamples(src.remaining());
+        if (pcm.length < need) pcm = new short[need];
+        pcmSamples = dec.decode(src, pcm);
+    }
+
+    /** Trame mixée (PCM) encodée pour cet auditeur ; thread du mixeur uniquement. */
+    ByteBuffer encodeMix(ByteBuffer mixPcm, int codec) {
+        if (codec == AudioCodec.PCM) return mixPcm;
+        if (mixEncoder == null || mixEncoder.id() != codec) {
+            mixEncoder = AudioCodec.create(codec);
+            mixOut = new byte[mixEncoder.maxEncodedSize(AudioMixer.FRAME)];
+            mixOutBuf = ByteBuffer.wrap(mixOut);
+        }
+        short[] frame = mixFrame;
+        int n = DECODERS[AudioCodec.PCM].decode(mixPcm, frame);
+        int len = mixEncoder.encode(frame, n, mixOut);
+        mixOutBuf.clear();
+        mixOutBuf.limit(len);
+        return mixOutBuf;
+    }
+}
@@ -0,0 +1,132 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.server.WebSocketServer.WebSocketWorker;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads décodeurs du serveur WebSocket (WebSocketWorker) : nombre dérivé des cœurs, affectation
+ * des connexions selon la charge mesurée, occupation de chaque décodeur.
+ *
+ * Java-WebSocket attache une connexion à un seul décodeur pour toute sa durée — ses trames restent
+ * donc traitées dans l'ordre — mais répartit les connexions en tourniquet. Ici l'affectation, faite
+ * à la première lecture, retient le décodeur de plus faible score : occupation sur la dernière
+ * seconde (‰) + CONNECTION_WEIGHT par connexion déjà affectée.
+ *
+ * L'occupation est le temps passé dans les callbacks onMessage (décodage Socket.IO, routage, mise
+ * en file vers les plans audio et contrôle) : java.lang.management n'existe pas sur Android.
+ */
+final class DecoderWorkers {
+
+    /** Poids d'une connexion affectée dans le score, en ‰ d'occupation. */
+    private static final int CONNECTION_WEIGHT = 10;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    /**
+     * Décodeurs par défaut : la moitié des cœurs (les petits cœurs des téléphones big.LITTLE, le
+     * sélecteur, le relais audio et le plan de contrôle ont besoin des autres), entre 1 et 8.
+     */
+    static int autoCount(int cores) {
+        return Math.max(1, Math.min(8, cores / 2));
+    }
+
+    /** Charge d'un décodeur ; compteurs écrits par son seul thread, lus sans verrou. */
+    static final class Load {
+        final WebSocketWorker worker;
+        final AtomicInteger connections = new AtomicInteger();
+        volatile long messages, busyNanos;
+        private volatile long windowStart = System.nanoTime();
+        private long windowBusy;
+        private volatile int permille;
+
+        Load(WebSocketWorker worker) {
+            this.worker = worker;
+        }
+
+        void busy(long startNanos) {
+            long now = System.nanoTime(), d = now - startNanos;
+            messages++;
+            busyNanos += d;
+            windowBusy += d;
+            long elapsed = now - windowStart;
+            if (elapsed >= WINDOW_NANOS) {
+                permille = (int) Math.min(1000, windowBusy * 1000 / elapsed);
+                windowBusy = 0;
+                windowStart = now;
+            }
+        }
+
+        /** Occupation de la dernière seconde (‰) ; 0 si le décodeur est resté inactif depuis. */
+        int permille(long now) {
+            return now - windowStart > 2 * WINDOW_NANOS ? 0 : permille;
+        }
+    }
+
+    private final Load[] loads;
+
+    DecoderWorkers(List<WebSocketWorker> decoders) {
+        loads = new Load[decoders.size()];
+        for (int i = 0; i < loads.length; i++) loads[i] = new Load(decoders.get(i));
+    }
+
+    int count() { return loads.length; }
+
+    /** Décodeur d'une nouvelle connexion (thread sélecteur). */
+    WebSocketWorker assign() {
+        long now = System.nanoTime();
+        Load best = loads[0];
+        int bestScore = Integer.MAX_VALUE;
+        for (Load l : loads) {
+            int score = l.permille(now) + CONNECTION_WEIGHT * l.connections.get();
+            if (score < bestScore) { best = l; bestScore = score; }
+        }
+        best.connections.incrementAndGet();
+        return best.worker;
+    }
+
+    void released(WebSocket ws) {
+        Load l = ws instanceof WebSocketImpl ? of(((WebSocketImpl) ws).getWorkerThread()) : null;
+        if (l != null) l.connections.decrementAndGet();
+    }
+
+    /** Charge du décodeur courant, null hors d'un thread décodeur. */
+    Load current() {
+        return of(Thread.currentThread());
+    }
+
+    private Load of(Thread t) {
+        for (Load l : loads) if (l.worker == t) return l;
+        return null;
+    }
+
+    /** [{"name","connections","messages","busyMs","busyPermille"}] */
+    void appendJson(StringBuilder sb) {
+        long now = System.nanoTime();
+        sb.append('[');
+        for (int i = 0; i < loads.length; i++) {
+            Load l = loads[i];
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":\"").append(l.worker.getName())
+              .append("\",\"connections\":").append(l.connections.get())
+              .append(",\"messages\":").append(l.messages)
+              .append(",\"busyMs\":").append(l.busyNanos / 1_000_000)
+              .append(",\"busyPermille\":").append(l.permille(now)).append('}');
+        }
+        sb.append(']');
+    }
+
+    @Override
+    public String toString() {
+        long now = System.nanoTime();
+        StringBuilder sb = new StringBuilder();
+        for (Load l : loads) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(l.worker.getName()).append('=').append(l.connections.get()).append("c/")
+              .append(l.permille(now) / 10).append('%');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.dewicom;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Assets lus depuis un dossier du système de fichiers, exposé sous le chemin mount (relais headless). */
+final class DirectoryAssets implements AssetSource {
+    private static final String[] NONE = new String[0];
+
+    private final File dir;
+    private final String mount;
+
+    /** dir est servi comme l'arborescence mount des assets de l'APK ("public"). */
+    DirectoryAssets(File dir, String mount) {
+        this.dir = dir;
+        this.mount = mount;
+    }
+
+    @Override
+    public String[] list(String path) {
+        File f = resolve(path);
+        String[] names = f != null ? f.list() : null;
+        return names != null ? names : NONE;
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        File f = resolve(path);
+        if (f == null) throw new FileNotFoundException(path);
+        return new FileInputStream(f);
+    }
+
+    /** Fichier de path, null hors de mount. */
+    private File resolve(String path) {
+        if (path.equals(mount)) return dir;
+        if (!path.startsWith(mount + "/") || path.contains("..")) return null;
+        return new File(dir, path.substring(mount.length() + 1));
+    }
+}
@@ -0,0 +1,108 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.framing.Framedata;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Diffusion « encode-once » : le message est découpé en trames WebSocket une seule fois
+ * (Draft.createFrames) puis la même liste de trames est poussée à chaque destinataire
+ * via sendFrame, au lieu d'un send() — donc d'un encodage UTF-8 et d'un framing — par socket.
+ * Les trames ne sont recalculées que si un destinataire négocie un draft différent.
+ * Les variantes *Audio passent par Backpressure : un destinataire saturé perd de l'audio,
+ * jamais d'événements de contrôle.
+ */
+final class FrameBroadcaster {
+
+    private FrameBroadcaster() {}
+
+    static void broadcast(WebSocket[] dests, WebSocket except, String text) {
+        List<Framedata> frames = null;
+        Draft framedFor = null;
+        for (WebSocket dest : dests) {
+            if (dest == except || !dest.isOpen()) continue;
+            Draft d = dest.getDraft();
+            if (frames == null || !d.equals(framedFor)) { frames = d.createFrames(text, false); framedFor = d; }
+            dest.sendFrame(frames);
+        }
+    }
+
+    /**
+     * Événement binaire Socket.IO : en-tête texte "45<n>-[...]" + n pièces jointes binaires,
+     * poussés en un seul sendFrame par destinataire pour qu'aucun autre message ne s'intercale
+     * entre l'en-tête et ses pièces jointes.
+     */
+    static void broadcast(WebSocket[] dests, WebSocket except, String header, ByteBuffer[] attachments, int count) {
+        List<Framedata> frames = null;
+        Draft framedFor = null;
+        for (WebSocket dest : dests) {
+            if (dest == except || !dest.isOpen()) continue;
+            Draft d = dest.getDraft();
+            if (frames == null || !d.equals(framedFor)) {
+                frames = new ArrayList<>(d.createFrames(header, false));
+                for (int i = 0; i < count; i++) frames.addAll(d.createFrames(attachments[i], false));
+                framedFor = d;
+            }
+            dest.sendFrame(frames);
+        }
+    }
+
+    /** Trame audio : événement binaire à une seule pièce jointe. Retourne le nombre d'envois. */
+    static int broadcastAudio(WebSocket[] dests, WebSocket except, String header, ByteBuffer attachment) {
+        List<Framedata> frames = null;
+        Draft framedFor = null;
+        int sent = 0;
+        for (WebSocket dest : dests) {
+            if (dest == except || !dest.isOpen() || !Backpressure.admitAudio(dest)) continue;
+            Draft d = dest.getDraft();
+            if (frames == null || !d.equals(framedFor)) {
+                frames = new ArrayList<>(d.createFrames(header, false));
+                frames.addAll(d.createFrames(attachment, false));
+                framedFor = d;
+            }
+            dest.sendFrame(frames);
+            sent++;
+        }
+        return sent;
+    }
+
+    /** Trame audio à destinataire unique (flux mixé propre à un auditeur). */
+    static void sendAudio(WebSocket dest, String header, ByteBuffer attachment) {
+        if (!Backpressure.admitAudio(dest)) return;
+        Draft d = dest.getDraft();
+        List<Framedata> frames = new ArrayList<>(d.createFrames(header, false));
+        frames.addAll(d.createFrames(attachment, false));
+        dest.sendFrame(frames);
+    }
+
+    /** Trame audio texte (ancien format base64). Retourne le nombre d'envois. */
+    static int broadcastAudio(WebSocket[] dests, WebSocket except, String text) {
+        List<Framedata> frames = null;
+        Draft framedFor = null;
+        int sent = 0;
+        for (WebSocket dest : dests) {
+            if (dest == except || !dest.isOpen() || !Backpressure.admitAudio(dest)) continue;
+            Draft d = dest.getDraft();
+            if (frames == null || !d.equals(framedFor)) { frames = d.createFrames(text, false); framedFor = d; }
+            dest.sendFrame(frames);
+            sent++;
+        }
+        return sent;
+    }
+
+    static void broadcast(Collection<WebSocket> dests, WebSocket except, String text) {
+        List<Framedata> frames = null;
+        Draft framedFor = null;
+        for (WebSocket dest : dests) {
+            if (dest == except || !dest.isOpen()) continue;
+            Draft d = dest.getDraft();
+            if (frames == null || !d.equals(framedFor)) { frames = d.createFrames(text, false); framedFor = d; }
+            dest.sendFrame(frames);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.dewicom;
+
+/**
+ * Séquencement de l'audio d'un talker : numéro de séquence relais, horodatage de capture ramené
+ * à l'horloge du relais, rejet des trames arrivées au-delà du budget de latence.
+ *
+ * Les horloges client et relais ne sont pas synchronisées : on suit l'écart arrivée − capture,
+ * dont le minimum glissant (deux fenêtres de 10 s, pour suivre la dérive) représente le transit
+ * sans file d'attente. Le retard d'une trame est son écart à ce minimum ; après un blocage Wi-Fi,
+ * les trames de la rafale trop anciennes sont abandonnées au lieu de décaler durablement la lecture.
+ *
+ * Appelé par le thread décodeur de la connexion et par le thread de réception UDP : accept est
+ * synchronisé, et seq/captureTs se lisent sous le même verrou (synchronized (sequencer)) juste après
+ * accept. Les compteurs sont lus sans verrou (valeurs indicatives).
+ */
+final class FrameSequencer {
+
+    private static final long WINDOW_MS = 10_000;
+
+    /** Séquence relais et capture (ms, horloge relais) de la dernière trame acceptée. */
+    long seq = -1, captureTs;
+    volatile long frames, gaps, reorders, drops;
+
+    private long lastClientSeq = -1;
+    private long minCurrent = Long.MAX_VALUE, minPrevious = Long.MAX_VALUE, windowStart;
+
+    /**
+     * Trame reçue à now (ms) ; clientSeq/clientTs valent -1 si le client ne les envoie pas
+     * (ancien client : séquencée et horodatée à l'arrivée, jamais rejetée pour retard).
+     * Retourne false si la trame doit être abandonnée (réordonnée ou hors budget, budgetMs <= 0 : illimité).
+     */
+    synchronized boolean accept(long clientSeq, long clientTs, long now, long budgetMs) {
+        frames++;
+        if (clientSeq >= 0) {
+            if (lastClientSeq >= 0 && clientSeq <= lastClientSeq) { reorders++; drops++; return false; }
+            if (lastClientSeq >= 0 && clientSeq > lastClientSeq + 1) gaps += clientSeq - lastClientSeq - 1;
+            lastClientSeq = clientSeq;
+        }
+        long late = 0;
+        if (clientTs >= 0) {
+            long offset = now - clientTs;
+            if (now - windowStart >= WINDOW_MS) { minPrevious = minCurrent; minCurrent = Long.MAX_VALUE; windowStart = now; }
+            if (offset < minCurrent) minCurrent = offset;
+            late = offset - Math.min(minCurrent, minPrevious);
+            if (budgetMs > 0 && late > budgetMs) { drops++; return false; }
+        }
+        seq++;
+        captureTs = now - late;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "frames=" + frames + " gaps=" + gaps + " reorders=" + reorders + " drops=" + drops;
+    }
+}
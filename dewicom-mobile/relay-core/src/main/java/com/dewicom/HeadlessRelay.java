@@ -0,0 +1,119 @@
+package com.dewicom;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Relais DewiCom sans Android : le même LocalWebServer (HTTP, WebSocket, UDP, présence) sur une
+ * JVM, pour un serveur dédié ou pour profiler et charger le relais avec l'outillage JVM habituel.
+ *
+ *   java [--add-exports java.base/sun.security.x509=ALL-UNNAMED] -cp … com.dewicom.HeadlessRelay [--web public/] [--data ~/.dewicom] [--ip 192.168.1.10]
+ *        [--https] [--ecdsa] [--udp] [--multicast] [--mix-minus] [--latency-budget 250]
+ *        [--ws-decoders 4] [--announce] [--verbose]
+ *
+ * --https exige l'export de sun.security.x509 (génération du certificat, TlsIdentity) : sans identité
+ * TLS le relais refuse de démarrer plutôt que de servir en HTTP clair.
+ * Sans --announce, le relais reste muet sur le réseau local : les clients ne le découvrent pas (profilage
+ * sur un poste de travail). Avec --announce, il s'annonce en mode "dedicated", prioritaire sur les
+ * relais des téléphones : à réserver au serveur dédié de la salle. S'arrête proprement sur SIGINT/SIGTERM.
+ */
+public final class HeadlessRelay implements RelayHost {
+    private static final String TAG = "HeadlessRelay";
+
+    private final AssetSource assets;
+    private final File dataDir;
+    private final String ip;
+
+    HeadlessRelay(File webRoot, File dataDir, String ip) {
+        this.assets = new DirectoryAssets(webRoot, "public");
+        this.dataDir = dataDir;
+        this.ip = ip != null ? ip : firstSiteLocalIPv4();
+    }
+
+    @Override public AssetSource assets() { return assets; }
+
+    @Override public File dataDir() { return dataDir; }
+
+    @Override public String localIPv4() { return ip; }
+
+    @Override public String mode() { return "dedicated"; }
+
+    /** Première IPv4 privée d'une interface active, null si aucune. */
+    static String firstSiteLocalIPv4() {
+        try {
+            for (NetworkInterface intf : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!intf.isUp() || intf.isLoopback()) continue;
+                for (InetAddress addr : Collections.list(intf.getInetAddresses()))
+                    if (addr instanceof Inet4Address && addr.isSiteLocalAddress()) return addr.getHostAddress();
+            }
+        } catch (SocketException e) {
+            RelayLog.w(TAG, "Interfaces réseau illisibles: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File web = new File("public");
+        File data = new File(System.getProperty("user.home"), ".dewicom");
+        String ip = null;
+        boolean https = false, ecdsa = false, udp = false, multicast = false, mixMinus = false, announce = false;
+        int latencyBudget = -1, wsDecoders = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--web":            web = new File(args[++i]); break;
+                case "--data":           data = new File(args[++i]); break;
+                case "--ip":             ip = args[++i]; break;
+                case "--https":          https = true; break;
+                case "--ecdsa":          ecdsa = true; break;
+                case "--udp":            udp = true; break;
+                case "--multicast":      multicast = true; break;
+                case "--mix-minus":      mixMinus = true; break;
+                case "--latency-budget": latencyBudget = Integer.parseInt(args[++i]); break;
+                case "--ws-decoders":    wsDecoders = Integer.parseInt(args[++i]); break;
+                case "--announce":       announce = true; break;
+                case "--verbose":        RelayLog.setSink(RelayLog.console(RelayLog.DEBUG)); break;
+                default:
+                    System.err.println("Option inconnue: " + args[i]);
+                    System.exit(2);
+                    return;
+            }
+        }
+        if (!new File(web, "index.html").isFile()) RelayLog.w(TAG, "Pas d'index.html dans " + web.getAbsolutePath());
+        if (!data.isDirectory() && !data.mkdirs()) throw new IOException("Dossier de données inaccessible: " + data);
+
+        HeadlessRelay host = new HeadlessRelay(web, data, ip);
+        LocalWebServer server = new LocalWebServer(host);
+        server.setTlsEcdsa(ecdsa);
+        server.setUdpEnabled(udp);
+        server.setMulticastAudio(multicast);
+        server.setMixMinus(mixMinus);
+        if (latencyBudget >= 0) server.setLatencyBudgetMs(latencyBudget);
+        server.setWsDecoders(wsDecoders);
+        server.setAnnounce(announce);
+        server.start(https);
+        if (!server.isReady()) throw new IOException("Serveur non prêt");
+        if (https && !server.isHttps()) {
+            server.stop();
+            throw new IOException("HTTPS demandé mais aucune identité TLS (certificat non généré ; "
+                    + "lancer la JVM avec --add-exports java.base/sun.security.x509=ALL-UNNAMED)");
+        }
+
+        String proto = server.isHttps() ? "https" : "http";
+        RelayLog.i(TAG, "Relais prêt sur " + proto + "://" + (host.ip != null ? host.ip : "127.0.0.1") + ":"
+                + LocalWebServer.HTTP_PORT + " — étapes (ms) " + server.getStartupTimings());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            RelayLog.i(TAG, "Arrêt du relais");
+            server.stop();
+            stopped.countDown();
+        }, "dewicom-shutdown"));
+        stopped.await();
+    }
+}
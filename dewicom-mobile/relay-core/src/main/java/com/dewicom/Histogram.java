@@ -0,0 +1,47 @@
+package com.dewicom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme à seaux fixes (µs), sans verrou ni allocation à l'enregistrement : un parcours
+ * des bornes puis quelques incréments atomiques.
+ */
+final class Histogram {
+    private final long[] boundsMicros;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /** boundsMicros croissantes ; un seau supplémentaire reçoit tout ce qui les dépasse. */
+    Histogram(long... boundsMicros) {
+        this.boundsMicros = boundsMicros;
+        this.counts = new AtomicLongArray(boundsMicros.length + 1);
+    }
+
+    void recordNanos(long nanos) {
+        long us = nanos / 1000;
+        int i = 0;
+        while (i < boundsMicros.length && us > boundsMicros[i]) i++;
+        counts.incrementAndGet(i);
+        count.incrementAndGet();
+        sumMicros.addAndGet(us);
+        long max;
+        while (us > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, us)) { /* retry */ }
+    }
+
+    /** {"count":n,"avgUs":…,"maxUs":…,"buckets":{"≤µs":n,…,"+Inf":n}} — seaux non cumulés. */
+    void appendJson(StringBuilder sb) {
+        long n = count.get();
+        sb.append("{\"count\":").append(n)
+          .append(",\"avgUs\":").append(n == 0 ? 0 : sumMicros.get() / n)
+          .append(",\"maxUs\":").append(maxMicros.get())
+          .append(",\"buckets\":{");
+        for (int i = 0; i <= boundsMicros.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(i < boundsMicros.length ? Long.toString(boundsMicros[i]) : "+Inf").append("\":").append(counts.get(i));
+        }
+        sb.append("}}");
+    }
+}
@@ -0,0 +1,99 @@
+package com.dewicom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/**
+ * AsyncRunner borné pour NanoHTTPD : le runner par défaut démarre un thread par connexion, une
+ * rafale de reconnexions en créerait des dizaines sur le téléphone hôte.
+ *
+ * Une connexion occupe un worker tant qu'elle reste ouverte (keep-alive compris, jusqu'au délai
+ * d'inactivité passé à NanoHTTPD.start) ; au-delà des workers, les connexions attendent dans une
+ * file bornée, au-delà de la file elles sont fermées aussitôt et comptées comme rejetées.
+ */
+final class HttpWorkerPool implements NanoHTTPD.AsyncRunner {
+    private static final String TAG = "HttpWorkerPool";
+
+    /** Attente en file et connexions rejetées (dropped) — mêmes compteurs que les plans audio/contrôle. */
+    final PlaneStats stats = new PlaneStats();
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger activeMax = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final Set<NanoHTTPD.ClientHandler> open = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    HttpWorkerPool(int workers, int queueLimit) {
+        AtomicInteger n = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueLimit)), r -> {
+                    Thread t = new Thread(r, "dewicom-http-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void exec(NanoHTTPD.ClientHandler handler) {
+        long queuedAt = System.nanoTime();
+        open.add(handler);
+        try {
+            executor.execute(() -> {
+                stats.started(System.nanoTime() - queuedAt);
+                int now = active.incrementAndGet();
+                int max;
+                while (now > (max = activeMax.get()) && !activeMax.compareAndSet(max, now)) { /* retry */ }
+                try {
+                    handler.run(); // ferme le socket et appelle closed() en sortie
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+            stats.queued(executor.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            open.remove(handler);
+            handler.close();
+            if (stats.dropped.incrementAndGet() % 50 == 1)
+                RelayLog.w(TAG, "Connexion HTTP rejetée : " + executor.getActiveCount() + " workers occupés, file pleine");
+        }
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler handler) {
+        open.remove(handler);
+    }
+
+    @Override
+    public void closeAll() {
+        for (NanoHTTPD.ClientHandler h : new ArrayList<>(open)) h.close();
+        open.clear();
+    }
+
+    void shutdown() {
+        closeAll();
+        executor.shutdownNow();
+    }
+
+    void appendJson(StringBuilder sb) {
+        sb.append("{\"active\":").append(active.get()).append(",\"activeMax\":").append(activeMax.get())
+          .append(",\"open\":").append(open.size()).append(",\"rejected\":").append(stats.dropped.get())
+          .append(",\"queue\":");
+        stats.appendJson(sb, executor.getQueue().size());
+        sb.append('}');
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + active.get() + " activeMax=" + activeMax.get() + " open=" + open.size() + " "
+                + stats.toString(executor.getQueue().size());
+    }
+}
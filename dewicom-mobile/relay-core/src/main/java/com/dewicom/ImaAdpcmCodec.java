@@ -0,0 +1,82 @@
+package com.dewicom;
+
+import java.nio.ByteBuffer;
+
+/**
+ * IMA-ADPCM : 4 bits par échantillon (4:1).
+ *
+ * Trame : en-tête de 4 octets (prédicteur Int16 LE, index de pas, 0) puis deux échantillons
+ * par octet, nibble bas en premier. L'en-tête porte l'état de l'encodeur au début de la trame :
+ * la qualité profite de la continuité entre trames, mais chaque trame se décode seule.
+ */
+final class ImaAdpcmCodec extends AudioCodec {
+    static final int HEADER = 4;
+
+    private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8};
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+            15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767};
+
+    // État de l'encodeur (continuité entre trames du même flux)
+    private int predictor, index;
+
+    @Override int id() { return ADPCM; }
+    @Override int maxEncodedSize(int samples) { return HEADER + (samples + 1) / 2; }
+    @Override int decodedSamples(int bytes) { return Math.max(0, (bytes - HEADER) * 2); }
+
+    @Override int encode(short[] pcm, int n, byte[] out) {
+        out[0] = (byte) predictor;
+        out[1] = (byte) (predictor >> 8);
+        out[2] = (byte) index;
+        out[3] = 0;
+        int p = predictor, idx = index;
+        for (int i = 0; i < n; i++) {
+            int step = STEP_TABLE[idx];
+            int diff = pcm[i] - p;
+            int code = 0;
+            if (diff < 0) { code = 8; diff = -diff; }
+            int delta = step >> 3;
+            if (diff >= step) { code |= 4; diff -= step; delta += step; }
+            step >>= 1;
+            if (diff >= step) { code |= 2; diff -= step; delta += step; }
+            step >>= 1;
+            if (diff >= step) { code |= 1; delta += step; }
+            p += (code & 8) != 0 ? -delta : delta;
+            if (p > Short.MAX_VALUE) p = Short.MAX_VALUE; else if (p < Short.MIN_VALUE) p = Short.MIN_VALUE;
+            idx += INDEX_TABLE[code];
+            if (idx < 0) idx = 0; else if (idx > 88) idx = 88;
+            int o = HEADER + (i >> 1);
+            if ((i & 1) == 0) out[o] = (byte) code;
+            else out[o] = (byte) (out[o] | code << 4);
+        }
+        predictor = p;
+        index = idx;
+        return HEADER + (n + 1) / 2;
+    }
+
+    @Override int decode(ByteBuffer in, short[] pcm) {
+        int pos = in.position(), len = in.remaining();
+        if (len < HEADER) return 0;
+        int p = (short) (in.get(pos + 1) << 8 | (in.get(pos) & 0xFF));
+        int idx = Math.min(88, Math.max(0, in.get(pos + 2)));
+        int n = Math.min(decodedSamples(len), pcm.length);
+        for (int i = 0; i < n; i++) {
+            int b = in.get(pos + HEADER + (i >> 1));
+            int code = (i & 1) == 0 ? b & 0x0F : (b >> 4) & 0x0F;
+            int step = STEP_TABLE[idx];
+            int delta = step >> 3;
+            if ((code & 4) != 0) delta += step;
+            if ((code & 2) != 0) delta += step >> 1;
+            if ((code & 1) != 0) delta += step >> 2;
+            p += (code & 8) != 0 ? -delta : delta;
+            if (p > Short.MAX_VALUE) p = Short.MAX_VALUE; else if (p < Short.MIN_VALUE) p = Short.MIN_VALUE;
+            idx += INDEX_TABLE[code];
+            if (idx < 0) idx = 0; else if (idx > 88) idx = 88;
+            pcm[i] = (short) p;
+        }
+        return n;
+    }
+}
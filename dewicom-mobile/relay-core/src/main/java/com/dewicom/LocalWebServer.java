@@ -0,0 +1,1002 @@
+package com.dewicom;
+
+import fi.iki.elonen.NanoHTTPD;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.java_websocket.server.DefaultSSLWebSocketServerFactory;
+import org.java_websocket.server.DefaultWebSocketServerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocketFactory;
+
+import com.dewicom.RoutingTable.UserInfo;
+
+public class LocalWebServer {
+    private static final String TAG = "LocalWebServer";
+    private static final String APP_VERSION = "1.4.2";
+    public static final int HTTP_PORT = 3001;
+    public static final int WS_PORT = 3002;
+    public static final int UDP_PORT = 3003;
+
+    private static final String MCAST_ADDR = "224.0.0.251";
+    private static final int MCAST_PORT = 9999;
+
+    private final RelayHost host;
+    private HttpServer httpServer;
+    private DewiComWSServer wsServer;
+    private Timer announceTimer;
+    private DatagramSocket announceSocket;
+    private volatile boolean running = false;
+    // Démarrage : prêt quand HTTP et WebSocket acceptent les connexions
+    private static final long WS_START_TIMEOUT_MS = 10_000;
+    private volatile CountDownLatch ready = new CountDownLatch(1);
+    private volatile CountDownLatch wsStarted = new CountDownLatch(1);
+    private volatile Exception wsStartError;
+    private volatile StartupStages startup;
+    private boolean useHttps = false;
+    private SSLContext sslContext = null;
+    private boolean tlsEcdsa = false;
+    private boolean mixMinus = false;
+    private boolean announce = true;
+    private AudioMixer mixer;
+    private volatile AssetCache assets;
+    private final QrCodeCache qrCache = new QrCodeCache();
+    // Serveur HTTP : workers bornés, file d'attente et délai d'inactivité keep-alive
+    private int httpWorkers = 16;
+    private int httpQueueLimit = 256;
+    private int httpKeepAliveMs = 2000;
+    private volatile HttpWorkerPool httpPool;
+    private final Presence presence = new Presence(() -> this.routing);
+    // Plans d'exécution : audio (anneau + thread relais) et contrôle (membres, présence, sonneries)
+    private final AudioRelay audioRelay = new AudioRelay(this::handleAudio);
+    private volatile ThreadPoolExecutor controlExecutor;
+    private final PlaneStats controlStats = new PlaneStats();
+    private final RelayMetrics metrics = new RelayMetrics();
+    private volatile int latencyBudgetMs = 250;
+    private int wsDecoders = 0; // 0 : DecoderWorkers.autoCount
+    private boolean udpEnabled = false;
+    private volatile UdpAudioTransport udp;
+    private boolean multicastEnabled = false;
+    private volatile MulticastAudio multicastAudio;
+    // En-têtes binaires constants par codec du flux mixé
+    private static final String[] MIX_HEADERS = new String[AudioCodec.COUNT];
+    static {
+        for (int c = 0; c < AudioCodec.COUNT; c++)
+            MIX_HEADERS[c] = "451-[\"audio-chunk\",{\"from\":\"mix\",\"codec\":\"" + AudioCodec.NAMES[c]
+                    + "\",\"chunk\":{\"_placeholder\":true,\"num\":0}}]";
+    }
+
+    // Canaux modifiables à l'exécution (persistés dans le dossier de données), administrés par /api/channels
+    private final ChannelRegistry channelRegistry;
+    private final ChannelApi channelApi;
+    // État de routage : snapshot immuable publié atomiquement (lu sans verrou par le chemin audio)
+    private volatile RoutingTable routing;
+    // Ids de canal internés par le décodeur Socket.IO (partagés entre connexions)
+    private final StringInterner channelIds;
+    private static final String AUDIO_CHUNK = SocketIoEvent.EVENTS.intern("audio-chunk", 0, 11);
+
+    public LocalWebServer(RelayHost host) {
+        this.host = host;
+        this.channelRegistry = new ChannelRegistry(new File(host.dataDir(), ChannelRegistry.CHANNELS_FILE));
+        this.channelApi = new ChannelApi(channelRegistry, () -> control(this::onChannelsChanged));
+        this.routing = RoutingTable.EMPTY.withChannels(channelRegistry.defs());
+        this.channelIds = new StringInterner();
+        for (ChannelRegistry.Channel c : channelRegistry.defs().ordered()) channelIds.intern(c.id, 0, c.id.length());
+    }
+
+    public void start() throws IOException {
+        start(false);
+    }
+
+    /**
+     * Démarre le serveur ; retourne quand HTTP et WebSocket acceptent les connexions (isReady),
+     * les annonces multicast ne partent qu'ensuite. Identité TLS, assets et plans audio sont
+     * préparés en parallèle ; les durées de chaque étape sont exposées par /api/ready.
+     */
+    public void start(boolean forceHttps) throws IOException {
+        ready = new CountDownLatch(1);
+        StartupStages stages = new StartupStages(3);
+        startup = stages;
+        try {
+            Future<SSLContext> tls = forceHttps
+                    // Identité persistée : générée au premier démarrage HTTPS seulement
+                    ? stages.submit("tls", () -> TlsIdentity.serverContext(host.dataDir(), tlsEcdsa)) : null;
+            Future<AssetCache> loadedAssets = stages.submit("assets", () -> AssetCache.load(host.assets(), "public"));
+            Future<Void> audio = stages.submit("audio", () -> { startAudioPlanes(); return null; });
+
+            if (tls != null) {
+                sslContext = StartupStages.await(tls);
+                useHttps = (sslContext != null);
+            }
+            // Les plans audio doivent exister avant la première connexion WebSocket
+            StartupStages.await(audio);
+            wsStarted = new CountDownLatch(1);
+            wsStartError = null;
+            int cores = Runtime.getRuntime().availableProcessors();
+            wsServer = new DewiComWSServer(new InetSocketAddress(WS_PORT),
+                    wsDecoders > 0 ? wsDecoders : DecoderWorkers.autoCount(cores));
+            wsServer.setReuseAddr(true);
+            wsServer.setWebSocketFactory(new SessionSocketFactory(useHttps
+                    ? new DefaultSSLWebSocketServerFactory(sslContext) : new DefaultWebSocketServerFactory(), channelIds));
+            // Le WebSocket se lie sur son propre thread pendant que HTTP démarre
+            long wsLaunched = System.nanoTime();
+            wsServer.start();
+
+            assets = StartupStages.await(loadedAssets);
+            stages.run("http", () -> {
+                httpServer = new HttpServer();
+                httpPool = new HttpWorkerPool(httpWorkers, httpQueueLimit);
+                httpServer.setAsyncRunner(httpPool);
+                if (useHttps) {
+                    SSLServerSocketFactory ssf = sslContext.getServerSocketFactory();
+                    httpServer.makeSecure(ssf, null);
+                }
+                httpServer.start(httpKeepAliveMs, false); // retourne une fois le port lié
+                return null;
+            });
+            stages.run("ws", () -> {
+                awaitWsStarted();
+                return null;
+            });
+            RelayLog.d(TAG, "WebSocket prêt " + (System.nanoTime() - wsLaunched) / 1_000_000 + " ms après son lancement, "
+                    + wsServer.workers.count() + " décodeurs pour " + cores + " cœurs");
+        } catch (IOException e) {
+            stages.finish();
+            stop();
+            throw e;
+        }
+
+        running = true;
+        stages.finish();
+        ready.countDown();
+        RelayLog.d(TAG, "Serveurs démarrés - " + (useHttps ? "HTTPS" : "HTTP") + ":" + HTTP_PORT + " WS:" + WS_PORT
+                + " — étapes (ms) " + stages.json());
+
+        if (announce) startMulticastAnnounce();
+    }
+
+    /** Plans d'exécution audio et contrôle, transports optionnels, présence, mixeur. */
+    private void startAudioPlanes() {
+        controlExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "dewicom-control");
+            t.setDaemon(true);
+            return t;
+        });
+        audioRelay.start();
+        if (udpEnabled) startUdp();
+        if (multicastEnabled && !mixMinus) startMulticastAudio();
+        presence.start();
+
+        if (mixMinus) {
+            mixer = new AudioMixer(new AudioMixer.Sink() {
+                @Override public RoutingTable routing() { return routing; }
+                @Override public void sendMix(WebSocket listener, java.nio.ByteBuffer pcm) {
+                    ClientSession session = listener.getAttachment();
+                    if (session == null) return;
+                    UserInfo user = routing.user(listener);
+                    int codec = user != null ? user.codec : AudioCodec.PCM;
+                    UdpAudioTransport transport = udp;
+                    if (user != null && user.udp != null && transport != null)
+                        transport.send(user.udp, codec, 0, 0, System.currentTimeMillis(), session.encodeMix(pcm, codec));
+                    else FrameBroadcaster.sendAudio(listener, MIX_HEADERS[codec], session.encodeMix(pcm, codec));
+                }
+            });
+            mixer.start();
+        }
+    }
+
+    private void awaitWsStarted() throws IOException {
+        try {
+            if (!wsStarted.await(WS_START_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                throw new IOException("WebSocket non démarré après " + WS_START_TIMEOUT_MS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Démarrage interrompu", e);
+        }
+        Exception error = wsStartError;
+        if (error != null) throw new IOException("WebSocket: " + error.getMessage(), error);
+    }
+
+    /** true quand HTTP et WebSocket acceptent les connexions. */
+    public boolean isReady() {
+        return running && ready.getCount() == 0;
+    }
+
+    /** Attend que le serveur soit prêt (voir isReady) ; false si le délai expire. */
+    public boolean awaitReady(long timeoutMs) throws InterruptedException {
+        return ready.await(timeoutMs, TimeUnit.MILLISECONDS) && running;
+    }
+
+    /** Durées des étapes du dernier démarrage (ms), en JSON. */
+    public String getStartupTimings() {
+        StartupStages stages = startup;
+        return stages != null ? stages.json() : "{}";
+    }
+
+    /**
+     * Identité TLS ECDSA P-256 au lieu de RSA-2048 (à appeler avant start) : poignées de main
+     * moins coûteuses pour l'hôte. Chaque type a son propre certificat persisté.
+     */
+    public void setTlsEcdsa(boolean enabled) { this.tlsEcdsa = enabled; }
+
+    /** Annonce du relais aux clients du réseau local (avant start, activée par défaut) ; coupée pour charge et profilage. */
+    public void setAnnounce(boolean enabled) { this.announce = enabled; }
+
+    /**
+     * Mixage mix-minus côté serveur (à appeler avant start) : chaque auditeur reçoit un seul flux
+     * PCM mixé au lieu d'un flux par talker. Ne concerne que l'audio binaire ; les anciens
+     * clients qui envoient du base64 texte restent relayés tels quels.
+     */
+    public void setMixMinus(boolean enabled) { this.mixMinus = enabled; }
+
+    /**
+     * Transport audio UDP optionnel (à appeler avant start) : les clients qui l'annoncent au join
+     * reçoivent un jeton d'enregistrement ; les autres restent sur le WebSocket.
+     */
+    public void setUdpEnabled(boolean enabled) { this.udpEnabled = enabled; }
+
+    /**
+     * Diffusion multicast de l'audio par canal (à appeler avant start, sans effet en mix-minus) :
+     * les clients natifs qui l'annoncent au join reçoivent les groupes des canaux et ne sont plus
+     * servis en unicast ; "multicast-fallback" les y ramène.
+     */
+    public void setMulticastAudio(boolean enabled) { this.multicastEnabled = enabled; }
+
+    private void startMulticastAudio() {
+        MulticastAudio mc = new MulticastAudio();
+        try {
+            String ip = host.localIPv4();
+            mc.start(ip != null ? InetAddress.getByName(ip) : null);
+            multicastAudio = mc;
+        } catch (IOException e) {
+            RelayLog.w(TAG, "Audio multicast indisponible, unicast seul: " + e.getMessage());
+        }
+    }
+
+    private void startUdp() {
+        UdpAudioTransport transport = new UdpAudioTransport(UDP_PORT, new UdpAudioTransport.Listener() {
+            @Override public void onRegister(WebSocket ws, InetSocketAddress peer) {
+                control(() -> {
+                    synchronized (LocalWebServer.this) {
+                        UserInfo user = routing.user(ws);
+                        if (user == null) return;
+                        if (user.udp != null && !user.udp.equals(peer)) udp.forget(ws, 0, user.udp);
+                        routing = routing.with(ws, user.withUdp(peer));
+                    }
+                    RelayLog.d(TAG, "Audio UDP enregistré: " + peer);
+                });
+            }
+            @Override public void onAudio(WebSocket ws, int codec, long seq, long ts, java.nio.ByteBuffer payload) {
+                ClientSession session = ws.getAttachment();
+                RoutingTable rt = routing;
+                UserInfo user = rt.user(ws);
+                if (session == null || user == null) return;
+                // Même séquenceur que le thread décodeur de la connexion : acceptation et lecture sous son verrou
+                FrameSequencer sq = session.sequencer;
+                long relaySeq, captureTs;
+                synchronized (sq) {
+                    if (!sq.accept(seq, ts, System.currentTimeMillis(), latencyBudgetMs)) return;
+                    relaySeq = sq.seq; captureTs = sq.captureTs;
+                }
+                audioRelay.offerFrame(ws, session, rt.recipientsByCodec(ws), user.talkTargets, codec, relaySeq, captureTs, payload);
+            }
+        });
+        try {
+            transport.start();
+            udp = transport;
+        } catch (IOException e) {
+            RelayLog.w(TAG, "Transport UDP indisponible, WebSocket seul: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Limites du serveur HTTP (à appeler avant start) : workers, connexions en attente au-delà
+     * (rejetées ensuite) et délai d'inactivité d'une connexion keep-alive, qui libère son worker.
+     */
+    public void setHttpLimits(int workers, int queueLimit, int keepAliveMs) {
+        this.httpWorkers = workers;
+        this.httpQueueLimit = queueLimit;
+        this.httpKeepAliveMs = keepAliveMs;
+    }
+
+    /** Compteurs du serveur HTTP (connexions actives, en attente, rejetées) — pour le diagnostic. */
+    public String getHttpStats() {
+        HttpWorkerPool pool = httpPool;
+        return pool != null ? pool.toString() : "";
+    }
+
+    /**
+     * Budget de latence de l'audio relayé (ms, 0 = illimité) : une trame dont le retard sur le
+     * transit minimal du talker dépasse ce budget est abandonnée au lieu d'être relayée en rafale.
+     */
+    public void setLatencyBudgetMs(int ms) { this.latencyBudgetMs = ms; }
+
+    /**
+     * Threads décodeurs WebSocket (à appeler avant start, 0 = selon les cœurs) ; chaque connexion
+     * reste sur un seul décodeur, affecté selon la charge mesurée (DecoderWorkers).
+     */
+    public void setWsDecoders(int decoders) { this.wsDecoders = decoders; }
+
+    /** Noms des clients dont l'audio sortant est actuellement délesté (file d'envoi saturée). */
+    public Set<String> getShedClients() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Map.Entry<WebSocket, UserInfo> e : routing.users.entrySet()) {
+            ClientSession session = e.getKey().getAttachment();
+            if (session != null && session.outbound.shedding) names.add(e.getValue().name);
+        }
+        return names;
+    }
+
+    public boolean isHttps() { return useHttps; }
+    public SSLContext getSslContext() { return sslContext; }
+
+    public void stop() {
+        if (announceTimer != null) { announceTimer.cancel(); announceTimer = null; }
+        if (announceSocket != null) { announceSocket.close(); announceSocket = null; }
+        if (mixer != null) { mixer.stop(); mixer = null; }
+        presence.stop();
+        audioRelay.stop();
+        if (udp != null) { udp.stop(); udp = null; }
+        if (multicastAudio != null) { multicastAudio.stop(); multicastAudio = null; }
+        if (controlExecutor != null) { controlExecutor.shutdownNow(); controlExecutor = null; }
+        if (httpServer != null) httpServer.stop();
+        if (httpPool != null) { httpPool.shutdown(); httpPool = null; }
+        if (wsServer != null) {
+            try { wsServer.stop(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+        running = false;
+    }
+
+    private void startMulticastAnnounce() {
+        try {
+            // Récupère l'IP locale pour l'inclure dans l'annonce
+            String ip = host.localIPv4();
+            final String localIP = ip != null ? ip : "127.0.0.1";
+
+            announceSocket = new DatagramSocket();
+            announceSocket.setBroadcast(true);
+
+            String proto = useHttps ? "https" : "http";
+            final byte[] payload = ("{\"service\":\"DewiCom\",\"version\":\"" + APP_VERSION + "\"," +
+                    "\"ip\":\"" + localIP + "\"," +
+                    "\"port\":" + HTTP_PORT + "," +
+                    "\"protocol\":\"" + proto + "\"," +
+                    "\"mode\":\"" + host.mode() + "\"}").getBytes("UTF-8");
+
+            final InetAddress group = InetAddress.getByName(MCAST_ADDR);
+
+            announceTimer = new Timer("dewicom-announce", true);
+            announceTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        DatagramPacket packet = new DatagramPacket(payload, payload.length, group, MCAST_PORT);
+                        announceSocket.send(packet);
+                        RelayLog.d(TAG, "Annonce multicast envoyée: " + localIP);
+                    } catch (Exception e) {
+                        RelayLog.w(TAG, "Erreur annonce multicast", e);
+                    }
+                }
+            }, 0, 1000); // immédiat puis toutes les 1s — réduit le délai de découverte
+
+            RelayLog.d(TAG, "Annonces multicast démarrées sur " + MCAST_ADDR + ":" + MCAST_PORT);
+        } catch (Exception e) {
+            RelayLog.w(TAG, "Impossible de démarrer les annonces multicast", e);
+        }
+    }
+
+    public boolean isAlive() {
+        return running;
+    }
+
+    // ── Serveur HTTP (NanoHTTPD) ──────────────────────────────────────────────
+    private class HttpServer extends NanoHTTPD {
+        HttpServer() { super(HTTP_PORT); }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            String uri = session.getUri();
+            RelayLog.d(TAG, "HTTP: " + uri);
+
+            if (uri.equals("/api/dewicom-discovery") || uri.equals("/api/ping")) {
+                String json = "{\"service\":\"DewiCom\",\"version\":\"" + APP_VERSION + "\",\"status\":\"running\",\"mode\":\"" + host.mode() + "\"}";
+                Response r = newFixedLengthResponse(Response.Status.OK, "application/json", json);
+                r.addHeader("Access-Control-Allow-Origin", "*");
+                return r;
+            }
+
+            if (uri.equals("/api/ready")) {
+                // 503 tant que les deux écoutes ne sont pas prêtes ; durées des étapes de démarrage
+                boolean ok = isReady();
+                String json = "{\"ready\":" + ok + ",\"protocol\":\"" + (useHttps ? "https" : "http")
+                        + "\",\"httpPort\":" + HTTP_PORT + ",\"wsPort\":" + WS_PORT + ",\"stages\":" + getStartupTimings() + "}";
+                Response r = newFixedLengthResponse(ok ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE, "application/json", json);
+                r.addHeader("Access-Control-Allow-Origin", "*");
+                r.addHeader("Cache-Control", "no-store");
+                return r;
+            }
+
+            if (uri.equals("/api/metrics")) {
+                Response r = newFixedLengthResponse(Response.Status.OK, "application/json", buildMetricsJson());
+                r.addHeader("Access-Control-Allow-Origin", "*");
+                r.addHeader("Cache-Control", "no-store");
+                return r;
+            }
+
+            if (ChannelApi.handles(uri)) return channelApi.serve(session);
+
+            if (uri.equals("/qr") || uri.equals("/qr.png")) {
+                try {
+                    String ip = host.localIPv4();
+                    if (ip == null) ip = "127.0.0.1";
+                    String proto2 = useHttps ? "https" : "http";
+                    // Régénéré uniquement si l'IP locale ou le protocole a changé
+                    QrCodeCache.Qr qr = qrCache.get(proto2 + "://" + ip + ":" + HTTP_PORT);
+                    Response r;
+                    if (uri.equals("/qr")) {
+                        r = newFixedLengthResponse(Response.Status.OK, "application/json", qr.json);
+                    } else if (qr.etag.equals(session.getHeaders().get("if-none-match"))) {
+                        r = newFixedLengthResponse(Response.Status.NOT_MODIFIED, "image/png", "");
+                        r.addHeader("ETag", qr.etag);
+                    } else {
+                        r = newFixedLengthResponse(Response.Status.OK, "image/png", new ByteArrayInputStream(qr.png), qr.png.length);
+                        r.addHeader("ETag", qr.etag);
+                        r.addHeader("Cache-Control", "no-cache");
+                    }
+                    r.addHeader("Access-Control-Allow-Origin", "*");
+                    return r;
+                } catch (Exception e) {
+                    RelayLog.e(TAG, "Erreur /qr", e);
+                    Response r = newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "application/json", "{\"error\":\"" + e.getMessage() + "\"}");
+                    r.addHeader("Access-Control-Allow-Origin", "*");
+                    return r;
+                }
+            }
+
+            // Assets en mémoire ; route inconnue → index.html (application monopage)
+            AssetCache cache = assets;
+            AssetCache.Entry asset = cache != null ? cache.get(uri) : null;
+            if (asset == null && cache != null) asset = cache.get("/");
+            if (asset == null) return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "404");
+            return serveAsset(session, asset);
+        }
+
+        /** Réponse de longueur fixe depuis le cache : 304 si l'ETag correspond, gzip précalculé si accepté. */
+        private Response serveAsset(IHTTPSession session, AssetCache.Entry asset) {
+            Map<String, String> headers = session.getHeaders();
+            String acceptEncoding = headers.get("accept-encoding");
+            boolean gzip = asset.gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+            Response r;
+            if (asset.matches(headers.get("if-none-match"))) {
+                r = newFixedLengthResponse(Response.Status.NOT_MODIFIED, asset.mime, "");
+            } else {
+                byte[] body = gzip ? asset.gzip : asset.identity;
+                r = newFixedLengthResponse(Response.Status.OK, asset.mime, new ByteArrayInputStream(body), body.length);
+                if (gzip) r.addHeader("Content-Encoding", "gzip");
+            }
+            r.addHeader("ETag", asset.etag(gzip));
+            r.addHeader("Cache-Control", AssetCache.CACHE_CONTROL);
+            if (asset.gzip != null) r.addHeader("Vary", "Accept-Encoding");
+            return r;
+        }
+
+        @Override
+        protected boolean useGzipWhenAccepted(Response r) {
+            // Les assets portent déjà leur encodage ; pas de gzip à la volée (réponse chunkée) par-dessus
+            return r.getHeader("ETag") == null && super.useGzipWhenAccepted(r);
+        }
+    }
+
+    // ── Serveur WebSocket (Java-WebSocket) ───────────────────────────────────
+    private class DewiComWSServer extends WebSocketServer {
+        final DecoderWorkers workers;
+
+        DewiComWSServer(InetSocketAddress addr, int decoders) {
+            super(addr, decoders);
+            workers = new DecoderWorkers(this.decoders);
+        }
+
+        @Override
+        protected void queue(WebSocketImpl ws) throws InterruptedException {
+            // Décodeur choisi à la première lecture puis conservé : les trames d'une connexion restent ordonnées
+            if (ws.getWorkerThread() == null) ws.setWorkerThread(workers.assign());
+            super.queue(ws);
+        }
+
+        @Override
+        public void onOpen(WebSocket ws, ClientHandshake h) {
+            ClientSession session = ws.getAttachment(); // attachée à l'acceptation (SessionSocketFactory)
+            if (session == null) ws.setAttachment(session = new ClientSession(channelIds));
+            metrics.opened(System.nanoTime() - session.createdNanos);
+            RelayLog.d(TAG, "WS connecté: " + ws.getRemoteSocketAddress());
+        }
+
+        @Override
+        public void onClose(WebSocket ws, int code, String reason, boolean remote) {
+            metrics.closed();
+            workers.released(ws);
+            control(() -> onLeave(ws));
+        }
+
+        @Override
+        public void onMessage(WebSocket ws, String text) {
+            long t = System.nanoTime();
+            try {
+                onText(ws, text);
+            } finally {
+                DecoderWorkers.Load load = workers.current();
+                if (load != null) load.busy(t);
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket ws, java.nio.ByteBuffer buf) {
+            long t = System.nanoTime();
+            try {
+                onBinary(ws, buf);
+            } finally {
+                DecoderWorkers.Load load = workers.current();
+                if (load != null) load.busy(t);
+            }
+        }
+
+        private void onText(WebSocket ws, String text) {
+            try {
+                // Socket.io protocol: "42["event",data]" ou heartbeat "2"
+                if (text.equals("2") || text.equals("2probe")) { ws.send("3"); return; } // heartbeat ping
+                ClientSession session = ws.getAttachment();
+                if (session == null) return;
+                SocketIoEvent ev = session.event;
+                if (!ev.parse(text)) return;
+                String event = ev.event;
+                if (ev.type == SocketIoEvent.BINARY_EVENT && ev.attachments > 0) {
+                    onBinaryEventHeader(ws, session, text);
+                    return;
+                }
+                if (event != AUDIO_CHUNK) RelayLog.d(TAG, "Event: " + event);
+
+                // Plan de contrôle : les valeurs utiles sont copiées hors de ev (réutilisé au message suivant)
+                // puis traitées sur l'exécuteur de contrôle, dans l'ordre d'arrivée
+                switch (event) {
+                    case "join": {
+                        if (ev.name == null || ev.channel == null) return;
+                        // Codec négocié : premier de la liste "codecs" du client que le relais sait traiter
+                        boolean negotiated = ev.preferredCodec >= 0, wantsUdp = ev.udp;
+                        // Multicast accordé seulement si le relais l'émet (jamais en mix-minus)
+                        boolean multicast = ev.multicast && multicastAudio != null && mixer == null;
+                        ChannelRegistry.Defs defs = channelRegistry.defs();
+                        UserInfo info = new UserInfo(ev.name, ev.channel, ev.clientId != null ? ev.clientId : "",
+                                negotiated ? ev.preferredCodec : AudioCodec.PCM, null, multicast,
+                                defs.bits(ev.listenChannels, ev.listenCount), defs.bits(ev.talkChannels, ev.talkCount), defs);
+                        control(() -> onJoin(ws, info, negotiated, wantsUdp));
+                        break;
+                    }
+                    case "switch-channel": {
+                        String newCh = ev.channel;
+                        if (newCh == null) return;
+                        control(() -> onSwitchChannel(ws, newCh));
+                        break;
+                    }
+                    case "presence-sync": {
+                        // Le client a constaté un trou de version : état complet à la version diffusée
+                        control(() -> presence.sendSnapshot(ws));
+                        break;
+                    }
+                    case "multicast-fallback": {
+                        // Le client ne reçoit pas les groupes (AP filtrant, IGMP…) : retour en unicast
+                        control(() -> {
+                            synchronized (LocalWebServer.this) {
+                                UserInfo user = routing.user(ws);
+                                if (user != null && user.multicast) routing = routing.with(ws, user.withMulticast(false));
+                            }
+                        });
+                        break;
+                    }
+                    case "update-listen-channels": {
+                        String[] newListen = Arrays.copyOf(ev.listenChannels, ev.listenCount);
+                        control(() -> {
+                            synchronized (LocalWebServer.this) {
+                                // Ids résolus contre les canaux de la table courante (registre modifiable)
+                                UserInfo user = routing.user(ws);
+                                if (user != null) routing = routing.with(ws, user.withListenChannels(routing.channels.bits(newListen, newListen.length)));
+                            }
+                        });
+                        break;
+                    }
+                    case "update-talk-channels": {
+                        String[] newTalk = Arrays.copyOf(ev.talkChannels, ev.talkCount);
+                        control(() -> {
+                            synchronized (LocalWebServer.this) {
+                                UserInfo user = routing.user(ws);
+                                if (user != null) routing = routing.with(ws, user.withTalkChannels(routing.channels.bits(newTalk, newTalk.length)));
+                            }
+                        });
+                        break;
+                    }
+                    case "ptt-start":
+                    case "ptt-stop": {
+                        boolean speaking = event.equals("ptt-start");
+                        control(() -> onPtt(ws, speaking));
+                        break;
+                    }
+                    case "audio-chunk": {
+                        RoutingTable rt = routing;
+                        UserInfo user = rt.user(ws);
+                        if (user == null) return;
+                        if (!session.sequencer.accept(ev.seq, ev.ts, System.currentTimeMillis(), latencyBudgetMs)) return;
+                        // Ancien format base64 texte : PCM relayé tel quel, sans étage codec ni réécriture d'en-tête
+                        int[] talk = audioTalkChannels(rt, user, session, ev);
+                        audioRelay.offerText(ws, session, talk == user.talkTargets ? rt.recipients(ws) : session.adHocRecipients(), talk, text);
+                        break;
+                    }
+                    case "call-ring": {
+                        // Director mode : talkChannels du payload prioritaire, sinon canal unique
+                        String[] ringChs = Arrays.copyOf(ev.talkChannels, ev.talkCount);
+                        String channel = ev.channel;
+                        control(() -> onCallRing(ws, ringChs, channel));
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                RelayLog.e(TAG, "Erreur message", e);
+            }
+        }
+
+        /**
+         * En-tête d'un événement binaire Socket.IO ("451-[\"audio-chunk\",{...,\"chunk\":{\"_placeholder\":true,\"num\":0}}]").
+         * Les destinataires sont résolus dès l'en-tête, répartis par codec ; les trames binaires qui
+         * suivent sont relayées telles quelles aux auditeurs du même codec, transcodées pour les autres.
+         */
+        private void onBinaryEventHeader(WebSocket ws, ClientSession session, String header) {
+            SocketIoEvent ev = session.event;
+            WebSocket[][] dests = null;
+            int[] talk = null;
+            long relaySeq = 0, captureTs = 0;
+            if (ev.event == AUDIO_CHUNK) {
+                RoutingTable rt = routing;
+                UserInfo user = rt.user(ws);
+                FrameSequencer sq = session.sequencer;
+                boolean accepted;
+                synchronized (sq) {
+                    // Trame en retard ou réordonnée : la pièce jointe sera consommée sans être relayée
+                    accepted = user != null && sq.accept(ev.seq, ev.ts, System.currentTimeMillis(), latencyBudgetMs);
+                    relaySeq = sq.seq; captureTs = sq.captureTs;
+                }
+                if (accepted) {
+                    talk = audioTalkChannels(rt, user, session, ev);
+                    dests = talk == user.talkTargets ? rt.recipientsByCodec(ws) : session.adHocRecipientsByCodec();
+                }
+            }
+            session.expectAttachments(header, ev.attachments, dests, talk, ev.codec >= 0 ? ev.codec : AudioCodec.PCM,
+                    relaySeq, captureTs);
+        }
+
+        /**
+         * Canaux parlés d'un audio-chunk : talkChannels du payload prioritaire (client director, une seule
+         * émission) ; s'il correspond aux canaux connus, user.talkTargets (même instance : destinataires précalculés),
+         * sinon les canaux ad hoc mémorisés par la session (destinataires calculés une fois par snapshot).
+         */
+        private int[] audioTalkChannels(RoutingTable rt, UserInfo user, ClientSession session, SocketIoEvent ev) {
+            if (ev.talkCount > 0 && !sameChannels(rt.channels, ev.talkChannels, ev.talkCount, user.talkTargets))
+                return session.adHocTalk(rt, ev.talkChannels, ev.talkCount);
+            return user.talkTargets;
+        }
+
+        private void onBinary(WebSocket ws, java.nio.ByteBuffer buf) {
+            ClientSession session = ws.getAttachment();
+            if (session != null && session.awaitingAttachment()) {
+                if (session.addAttachment(buf)) {
+                    if (session.pendingDests == null) { /* événement non relayé */ }
+                    else if (session.pendingExpected != 1) {
+                        // Plusieurs pièces jointes : hors étage codec, relayé tel quel
+                        for (WebSocket[] dests : session.pendingDests)
+                            FrameBroadcaster.broadcast(dests, ws, session.pendingHeader,
+                                    session.pendingAttachments, session.pendingExpected);
+                    }
+                    else audioRelay.offerFrame(ws, session, session.pendingDests, session.pendingChannels,
+                                session.pendingCodec, session.pendingSeq, session.pendingCaptureTs, session.pendingAttachments[0]);
+                    session.clearPending();
+                }
+                return;
+            }
+            // Trame binaire brute (sans enveloppe Socket.IO), dans le codec négocié par le talker
+            RoutingTable rt = routing;
+            UserInfo user = rt.user(ws);
+            if (user == null || session == null) return;
+            FrameSequencer sq = session.sequencer;
+            long relaySeq, captureTs;
+            synchronized (sq) {
+                sq.accept(-1, -1, System.currentTimeMillis(), latencyBudgetMs);
+                relaySeq = sq.seq; captureTs = sq.captureTs;
+            }
+            audioRelay.offerFrame(ws, session, rt.recipientsByCodec(ws), user.talkTargets, user.codec, relaySeq, captureTs, buf);
+        }
+
+        @Override
+        public void onError(WebSocket ws, Exception e) {
+            RelayLog.e(TAG, "WS erreur", e);
+            // ws == null : erreur du serveur lui-même (port déjà pris…) avant onStart
+            if (ws == null && wsStarted.getCount() > 0) {
+                wsStartError = e;
+                wsStarted.countDown();
+            }
+        }
+
+        @Override
+        public void onStart() {
+            RelayLog.d(TAG, "WS serveur démarré sur port " + WS_PORT);
+            wsStarted.countDown();
+        }
+    }
+
+    // ── Plan de contrôle (exécuteur dédié) ───────────────────────────────────
+
+    private void control(Runnable task) {
+        ThreadPoolExecutor ex = controlExecutor;
+        long queuedAt = System.nanoTime();
+        Runnable timed = () -> {
+            controlStats.started(System.nanoTime() - queuedAt);
+            try { task.run(); } catch (Exception e) { RelayLog.e(TAG, "Erreur contrôle", e); }
+        };
+        if (ex == null) { timed.run(); return; }
+        try {
+            ex.execute(timed);
+            controlStats.queued(ex.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            controlStats.dropped.incrementAndGet(); // serveur arrêté
+        }
+    }
+
+    private void onJoin(WebSocket ws, UserInfo info, boolean codecNegotiated, boolean wantsUdp) {
+        synchronized (this) {
+            // Remplace toute entrée existante du même client (reconnexion)
+            routing = routing.join(ws, info);
+        }
+        ws.send("42[\"channels-init\"," + routing.channels.json() + "]");
+        presence.sendSnapshot(ws);
+        if (codecNegotiated)
+            ws.send("42[\"codec\",{\"codec\":\"" + AudioCodec.NAMES[info.codec] + "\"}]");
+        UdpAudioTransport transport = udp;
+        ClientSession session = ws.getAttachment();
+        if (wantsUdp && transport != null && session != null) {
+            if (session.udpToken == 0) session.udpToken = transport.issueToken(ws);
+            ws.send("42[\"udp\",{\"port\":" + transport.port() + ",\"token\":" + session.udpToken + "}]");
+        }
+        if (info.multicast) sendMulticastGroups(ws, routing.channels);
+        broadcastChannel(info.channel, "42[\"user-joined\",{\"name\":\"" + info.name + "\",\"channel\":\"" + info.channel + "\"}]", ws);
+        presence.changed();
+        RelayLog.d(TAG, info.name + " rejoint " + info.channel);
+    }
+
+    private void onSwitchChannel(WebSocket ws, String newCh) {
+        UserInfo user;
+        synchronized (this) {
+            user = routing.user(ws);
+            if (user == null || routing.channels.get(newCh) == null) return;
+            routing = routing.with(ws, user.withChannel(newCh));
+            broadcastChannel(user.channel, "42[\"user-left\",{\"name\":\"" + user.name + "\",\"channel\":\"" + user.channel + "\"}]", ws);
+        }
+        broadcastChannel(newCh, "42[\"user-joined\",{\"name\":\"" + user.name + "\",\"channel\":\"" + newCh + "\"}]", ws);
+        presence.changed();
+    }
+
+    private void onLeave(WebSocket ws) {
+        synchronized (this) {
+            UserInfo user = routing.user(ws);
+            ClientSession leaving = ws.getAttachment();
+            if (udp != null && leaving != null) udp.forget(ws, leaving.udpToken, user != null ? user.udp : null);
+            if (user != null) {
+                routing = routing.without(ws);
+                broadcastChannel(user.channel, "42[\"user-left\",{\"name\":\"" + user.name + "\",\"channel\":\"" + user.channel + "\"}]", ws);
+                presence.changed();
+                ClientSession session = ws.getAttachment();
+                RelayLog.d(TAG, user.name + " déconnecté" + (session != null ? " — audio " + session.sequencer
+                        + " shed=" + session.outbound.shedFrames.get() : ""));
+            }
+            // Après la publication du routage : un tick ne voit plus ws comme destinataire
+            if (mixer != null) mixer.remove(ws);
+        }
+    }
+
+    private void onPtt(WebSocket ws, boolean speaking) {
+        RoutingTable rt = routing;
+        UserInfo user = rt.user(ws);
+        if (user == null) return;
+        for (int tch : user.talkTargets)
+            FrameBroadcaster.broadcast(rt.members(tch), ws, "42[\"ptt-state\",{\"from\":\"" + user.name + "\",\"fromId\":\"" + ws.hashCode()
+                    + "\",\"channel\":\"" + rt.channels.at(tch).id + "\",\"speaking\":" + speaking + "}]");
+    }
+
+    private void onCallRing(WebSocket ws, String[] ringChs, String channel) {
+        RoutingTable rt = routing;
+        UserInfo user = rt.user(ws);
+        if (user == null) return;
+        int[] ring = rt.channels.indices(ringChs, ringChs.length);
+        if (ring.length == 0) {
+            int ch = rt.channels.indexOf(channel);
+            ring = new int[]{ch >= 0 ? ch : user.channelIndex};
+        }
+        String firstCh = rt.channels.at(ring[0]).id;
+        // Membres des canaux + ceux qui les écoutent : masques intersectés, chacun une seule fois
+        String ringMsg = "42[\"call-ring\",{\"from\":\"" + user.name + "\",\"channel\":\"" + firstCh + "\"}]";
+        FrameBroadcaster.broadcast(rt.listeners(ChannelBits.of(ring)), ws, ringMsg);
+    }
+
+    /**
+     * Registre modifié (/api/channels) : routage re-résolu (membres d'un canal supprimé replacés sur
+     * le premier canal), puis liste des canaux, état de présence complet et groupes multicast à tous.
+     */
+    private void onChannelsChanged() {
+        RoutingTable rt;
+        synchronized (this) {
+            ChannelRegistry.Defs before = routing.channels, after = channelRegistry.defs();
+            for (ChannelRegistry.Channel c : before.ordered())
+                if (after.at(c.index) == null || !after.at(c.index).id.equals(c.id)) metrics.forget(c.index);
+            for (ChannelRegistry.Channel c : after.ordered()) channelIds.intern(c.id, 0, c.id.length());
+            routing = rt = routing.withChannels(after);
+        }
+        FrameBroadcaster.broadcast(rt.users.keySet(), null, "42[\"channels-init\"," + rt.channels.json() + "]");
+        presence.resync();
+        for (Map.Entry<WebSocket, UserInfo> e : rt.users.entrySet())
+            if (e.getValue().multicast) sendMulticastGroups(e.getKey(), rt.channels);
+        RelayLog.d(TAG, rt.channels.size() + " canaux, " + rt.users.size() + " utilisateurs re-routés");
+    }
+
+    /** Groupes multicast des canaux ; id : celui des datagrammes, pour ignorer sa propre voix renvoyée par le groupe. */
+    private static void sendMulticastGroups(WebSocket ws, ChannelRegistry.Defs defs) {
+        if (!ws.isOpen()) return;
+        ws.send("42[\"multicast\",{\"codec\":\"" + AudioCodec.NAMES[MulticastAudio.CODEC] + "\",\"id\":" + ws.hashCode()
+                + ",\"groups\":" + MulticastAudio.groupsJson(defs) + "}]");
+    }
+
+    // ── Plan de données (thread relais audio) ────────────────────────────────
+
+    private void handleAudio(AudioRelay.Job job) {
+        if (job.text != null) {
+            int sent = FrameBroadcaster.broadcastAudio(job.textDests, job.ws, job.text);
+            metrics.frameIn(job.channels, job.text.length());
+            metrics.frameOut(job.channels, sent, (long) sent * job.text.length());
+            metrics.fanOut.recordNanos(System.nanoTime() - job.enqueuedNanos);
+            return;
+        }
+        ClientSession session = job.session;
+        session.beginFrame();
+        metrics.frameIn(job.channels, job.payload.remaining());
+        AudioMixer mx = mixer;
+        if (mx != null) mx.push(job.ws, session.toPcm(job.payload, job.codec));
+        else {
+            relayAudio(job);
+            // Réception (mise en file dès onMessage) → retour du dernier envoi
+            metrics.fanOut.recordNanos(System.nanoTime() - job.enqueuedNanos);
+        }
+    }
+
+    /**
+     * Relais d'une trame audio : une passe par codec ayant des auditeurs, sous un en-tête portant
+     * la séquence et la capture estampillées par le relais. Les auditeurs du codec source
+     * reçoivent la charge utile d'origine ; pour les autres, la trame est décodée une fois puis
+     * réencodée une fois par codec, et encodée en trames WebSocket une seule fois par groupe.
+     */
+    private void relayAudio(AudioRelay.Job job) {
+        WebSocket ws = job.ws;
+        ClientSession session = job.session;
+        UdpAudioTransport transport = udp;
+        int copies = 0;
+        long bytes = 0;
+        for (int c = 0; c < AudioCodec.COUNT; c++) {
+            WebSocket[] dests = job.dests[c], udpDests = job.dests[RoutingTable.UDP + c];
+            boolean toWs = hasOther(dests, ws), toUdp = transport != null && hasOther(udpDests, ws);
+            if (!toWs && !toUdp) continue;
+            java.nio.ByteBuffer out = c == job.codec ? job.payload : session.transcode(job.payload, job.codec, c);
+            int sent = 0;
+            if (toWs) sent += FrameBroadcaster.broadcastAudio(dests, ws, session.audioHeader(c, job.seq, job.captureTs), out);
+            if (toUdp) {
+                // Clients enregistrés en UDP : un datagramme chacun, jamais de file d'attente
+                RoutingTable rt = routing;
+                for (WebSocket dest : udpDests) {
+                    UserInfo u = rt.user(dest);
+                    if (dest != ws && u != null && u.udp != null) {
+                        transport.send(u.udp, c, ws.hashCode(), job.seq, job.captureTs, out);
+                        sent++;
+                    }
+                }
+            }
+            copies += sent;
+            bytes += (long) sent * out.remaining();
+        }
+        MulticastAudio mc = multicastAudio;
+        if (mc != null && job.channels != null) {
+            // Un datagramme par canal parlé ayant des abonnés, quel que soit leur nombre
+            RoutingTable rt = routing;
+            for (int ch : job.channels) {
+                if (!rt.multicast(ch)) continue;
+                java.nio.ByteBuffer out = job.codec == MulticastAudio.CODEC
+                        ? job.payload : session.transcode(job.payload, job.codec, MulticastAudio.CODEC);
+                mc.send(ch, ws.hashCode(), job.seq, job.captureTs, out);
+                copies++;
+                bytes += out.remaining();
+            }
+        }
+        metrics.frameOut(job.channels, copies, bytes);
+    }
+
+    private static boolean hasOther(WebSocket[] dests, WebSocket self) {
+        return dests.length > 1 || (dests.length == 1 && dests[0] != self);
+    }
+
+    /** Compteurs des deux plans (profondeur de file, attente) — pour le diagnostic. */
+    public String getPlaneStats() {
+        ThreadPoolExecutor ex = controlExecutor;
+        DewiComWSServer ws = wsServer;
+        return "audio[" + audioRelay.stats.toString(audioRelay.depth()) + "] control["
+                + controlStats.toString(ex != null ? ex.getQueue().size() : 0) + "]"
+                + (ws != null ? " decoders[" + ws.workers + "]" : "");
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** /api/metrics : connexions, HTTP, plans d'exécution, décodeurs WebSocket, fan-out, trafic par canal et par client. */
+    private String buildMetricsJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        DewiComWSServer ws = wsServer;
+        sb.append("{\"connections\":{\"open\":").append(ws != null ? ws.getConnections().size() : 0)
+          .append(",\"opened\":").append(metrics.wsOpened.get()).append(",\"closed\":").append(metrics.wsClosed.get())
+          .append(",\"handshakeUs\":");
+        metrics.handshake.appendJson(sb);
+        sb.append("},\"http\":");
+        HttpWorkerPool pool = httpPool;
+        if (pool != null) pool.appendJson(sb); else sb.append("{}");
+        sb.append(",\"planes\":{\"audio\":");
+        audioRelay.stats.appendJson(sb, audioRelay.depth());
+        sb.append(",\"control\":");
+        ThreadPoolExecutor ex = controlExecutor;
+        controlStats.appendJson(sb, ex != null ? ex.getQueue().size() : 0);
+        sb.append("},\"wsDecoders\":{\"cores\":").append(Runtime.getRuntime().availableProcessors()).append(",\"workers\":");
+        if (ws != null) ws.workers.appendJson(sb); else sb.append("[]");
+        sb.append("},\"fanOutUs\":");
+        metrics.fanOut.appendJson(sb);
+        sb.append(",\"channels\":");
+        metrics.appendChannels(sb, routing.channels);
+        sb.append(",\"clients\":");
+        RelayMetrics.appendConnections(sb, routing);
+        return sb.append('}').toString();
+    }
+
+    private void broadcastChannel(String channel, String msg, WebSocket sender) {
+        FrameBroadcaster.broadcast(routing.members(channel), sender, msg);
+    }
+
+    /** ids[0..count) et les index targets désignent-ils les mêmes canaux ? (sans allocation) */
+    private static boolean sameChannels(ChannelRegistry.Defs defs, String[] ids, int count, int[] targets) {
+        if (count != targets.length) return false;
+        outer:
+        for (int i = 0; i < count; i++) {
+            for (int t : targets) if (defs.at(t).id.equals(ids[i])) continue outer;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dewicom;
+
+import java.nio.ByteBuffer;
+
+/** G.711 μ-law : 8 bits par échantillon (2:1), sans état. */
+final class MuLawCodec extends AudioCodec {
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+    private static final short[] DECODE = new short[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int u = ~i & 0xFF;
+            int exponent = (u >> 4) & 0x07, mantissa = u & 0x0F;
+            int sample = (((mantissa << 3) + BIAS) << exponent) - BIAS;
+            DECODE[i] = (short) ((u & 0x80) != 0 ? -sample : sample);
+        }
+    }
+
+    static byte encodeSample(int pcm) {
+        int sign = 0;
+        if (pcm < 0) { pcm = -pcm; sign = 0x80; }
+        if (pcm > CLIP) pcm = CLIP;
+        pcm += BIAS;
+        int exponent = 7;
+        for (int mask = 0x4000; (pcm & mask) == 0 && exponent > 0; mask >>= 1) exponent--;
+        int mantissa = (pcm >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    @Override int id() { return MULAW; }
+    @Override int maxEncodedSize(int samples) { return samples; }
+    @Override int decodedSamples(int bytes) { return bytes; }
+
+    @Override int encode(short[] pcm, int n, byte[] out) {
+        for (int i = 0; i < n; i++) out[i] = encodeSample(pcm[i]);
+        return n;
+    }
+
+    @Override int decode(ByteBuffer in, short[] pcm) {
+        int pos = in.position(), n = Math.min(in.remaining(), pcm.length);
+        for (int i = 0; i < n; i++) pcm[i] = DECODE[in.get(pos + i) & 0xFF];
+        return n;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dewicom;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+
+/**
+ * Diffusion multicast de l'audio par canal : chaque canal a son groupe à portée administrative
+ * (239.255.77.x, x = index du canal + 1) et son port. Une trame coûte un envoi par canal parlé au lieu d'un par auditeur ;
+ * les clients natifs qui ont annoncé "multicast":true au join s'abonnent aux groupes des canaux
+ * qu'ils entendent et ne reçoivent plus cet audio en unicast. Un client qui ne reçoit rien
+ * (AP filtrant le multicast, IGMP…) envoie "multicast-fallback" et repasse en unicast.
+ *
+ * Datagrammes au format UdpAudioTransport, toujours en IMA-ADPCM (le multicast Wi-Fi part au
+ * débit de base : la trame la plus courte). Un auditeur de plusieurs canaux parlés par un même
+ * talker reçoit la trame une fois par groupe et déduplique sur (émetteur, séquence).
+ */
+final class MulticastAudio {
+    private static final String TAG = "MulticastAudio";
+
+    static final String GROUP_PREFIX = "239.255.77.";
+    static final int BASE_PORT = 3010;
+    static final int CODEC = AudioCodec.ADPCM;
+
+    private final byte[] buf = new byte[1500];
+    private final ByteBuffer out = ByteBuffer.wrap(buf);
+    private final DatagramPacket packet = new DatagramPacket(buf, 0);
+    private final InetSocketAddress[] groups = new InetSocketAddress[ChannelRegistry.MAX_CHANNELS]; // sous this
+    private MulticastSocket socket;
+
+    void start(InetAddress iface) throws IOException {
+        socket = new MulticastSocket();
+        socket.setTimeToLive(1); // réseau local uniquement
+        NetworkInterface ni = iface != null ? NetworkInterface.getByInetAddress(iface) : null;
+        if (ni != null) socket.setNetworkInterface(ni);
+        RelayLog.d(TAG, "Audio multicast " + GROUP_PREFIX + "x:" + BASE_PORT + "+ via " + iface);
+    }
+
+    void stop() {
+        if (socket != null) { socket.close(); socket = null; }
+    }
+
+    static String group(int channel) { return GROUP_PREFIX + (channel + 1); }
+    static int port(int channel) { return BASE_PORT + channel + 1; }
+
+    /** {"general":"239.255.77.1:3011",…} pour les canaux du registre — envoyé au join et à chaque modification. */
+    static String groupsJson(ChannelRegistry.Defs defs) {
+        StringBuilder sb = new StringBuilder("{");
+        for (ChannelRegistry.Channel c : defs.ordered()) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"').append(c.id).append("\":\"").append(group(c.index)).append(':').append(port(c.index)).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Émet une trame (déjà en CODEC) sur le groupe du canal d'index channel ; thread relais audio. */
+    synchronized void send(int channel, int sourceId, long seq, long ts, ByteBuffer frame) {
+        MulticastSocket s = socket;
+        if (s == null || frame.remaining() > buf.length - UdpAudioTransport.HEADER) return;
+        out.clear();
+        UdpAudioTransport.putHeader(out, UdpAudioTransport.AUDIO, CODEC, sourceId, seq, ts);
+        out.put(frame.duplicate());
+        try {
+            packet.setData(buf, 0, out.position());
+            InetSocketAddress to = groups[channel];
+            if (to == null) groups[channel] = to = new InetSocketAddress(InetAddress.getByName(group(channel)), port(channel));
+            packet.setSocketAddress(to);
+            s.send(packet);
+        } catch (IOException e) {
+            // comme en UDP unicast : une trame non émise est perdue
+        }
+    }
+}
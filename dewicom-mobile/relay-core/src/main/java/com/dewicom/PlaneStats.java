@@ -0,0 +1,42 @@
+package com.dewicom;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Compteurs d'un plan d'exécution (audio ou contrôle) : profondeur de file et temps d'attente. */
+final class PlaneStats {
+    final AtomicLong tasks = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong waitNanosTotal = new AtomicLong();
+    final AtomicLong waitNanosMax = new AtomicLong();
+    final AtomicInteger depthMax = new AtomicInteger();
+
+    /** Tâche mise en file ; depth = profondeur après ajout. */
+    void queued(int depth) {
+        int max;
+        while (depth > (max = depthMax.get()) && !depthMax.compareAndSet(max, depth)) { /* retry */ }
+    }
+
+    /** Tâche démarrée après waitNanos passées en file. */
+    void started(long waitNanos) {
+        tasks.incrementAndGet();
+        waitNanosTotal.addAndGet(waitNanos);
+        long max;
+        while (waitNanos > (max = waitNanosMax.get()) && !waitNanosMax.compareAndSet(max, waitNanos)) { /* retry */ }
+    }
+
+    void appendJson(StringBuilder sb, int depth) {
+        long n = tasks.get();
+        sb.append("{\"depth\":").append(depth).append(",\"depthMax\":").append(depthMax.get())
+          .append(",\"tasks\":").append(n).append(",\"dropped\":").append(dropped.get())
+          .append(",\"waitAvgUs\":").append(n == 0 ? 0 : waitNanosTotal.get() / n / 1000)
+          .append(",\"waitMaxUs\":").append(waitNanosMax.get() / 1000).append('}');
+    }
+
+    String toString(int depth) {
+        long n = tasks.get();
+        return "depth=" + depth + " depthMax=" + depthMax.get() + " tasks=" + n + " dropped=" + dropped.get()
+                + " waitAvgUs=" + (n == 0 ? 0 : waitNanosTotal.get() / n / 1000)
+                + " waitMaxUs=" + waitNanosMax.get() / 1000;
+    }
+}
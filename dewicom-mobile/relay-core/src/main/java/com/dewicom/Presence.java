@@ -0,0 +1,122 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Présence versionnée : au lieu de rediffuser l'état complet de tous les canaux à chaque join,
+ * switch ou close, les changements sont regroupés sur COALESCE_MS puis envoyés en un seul
+ * "presence-delta" (user-joined / user-left / user-moved) à chaque client, une fois.
+ *
+ * Le delta est calculé en comparant le snapshot de routage de la dernière diffusion (base) au
+ * snapshot courant : une rafale de reconnexions coûte un diff par fenêtre, pas un état complet
+ * par événement. L'état complet ("channel-state", version en 3e argument) n'est envoyé qu'au
+ * join, sur demande ("presence-sync") — notamment quand le client constate un trou de version.
+ */
+final class Presence {
+
+    static final long COALESCE_MS = 50;
+
+    interface Source {
+        RoutingTable routing();
+    }
+
+    private final Source source;
+    private ScheduledExecutorService executor;
+    // Dernier état diffusé et sa version ; les envois se font sous le verrou pour rester ordonnés
+    private RoutingTable base = RoutingTable.EMPTY;
+    private long version;
+    private boolean flushPending;
+
+    Presence(Source source) {
+        this.source = source;
+    }
+
+    synchronized void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dewicom-presence");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    synchronized void stop() {
+        if (executor != null) { executor.shutdownNow(); executor = null; }
+    }
+
+    /** Signale un changement de présence ; la diffusion part au plus tard COALESCE_MS après. */
+    synchronized void changed() {
+        if (flushPending || executor == null) return;
+        flushPending = true;
+        executor.schedule(this::flush, COALESCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Envoie l'état complet (à la version diffusée) à un seul client. */
+    synchronized void sendSnapshot(WebSocket ws) {
+        if (ws.isOpen()) ws.send("42[\"channel-state\"," + snapshotJson(base) + "," + version + "]");
+    }
+
+    /**
+     * Canaux créés, renommés ou supprimés : un delta ne suffit pas (les clients n'ont pas les
+     * nouveaux canaux), l'état complet part à tous sous une nouvelle version.
+     */
+    synchronized void resync() {
+        RoutingTable now = source.routing();
+        base = now;
+        String msg = "42[\"channel-state\"," + snapshotJson(now) + "," + ++version + "]";
+        FrameBroadcaster.broadcast(now.users.keySet(), null, msg);
+    }
+
+    synchronized void flush() {
+        flushPending = false;
+        RoutingTable now = source.routing();
+        StringBuilder deltas = new StringBuilder();
+        for (Map.Entry<WebSocket, RoutingTable.UserInfo> e : now.users.entrySet()) {
+            RoutingTable.UserInfo before = base.user(e.getKey()), after = e.getValue();
+            if (before == null) appendDelta(deltas, "user-joined", e.getKey(), after, null);
+            else if (!before.channel.equals(after.channel)) appendDelta(deltas, "user-moved", e.getKey(), after, before.channel);
+        }
+        for (Map.Entry<WebSocket, RoutingTable.UserInfo> e : base.users.entrySet()) {
+            if (now.user(e.getKey()) == null) appendDelta(deltas, "user-left", e.getKey(), e.getValue(), null);
+        }
+        base = now;
+        if (deltas.length() == 0) return;
+        long from = version++;
+        String msg = "42[\"presence-delta\",{\"from\":" + from + ",\"v\":" + version + ",\"deltas\":[" + deltas + "]}]";
+        // Chaque client une seule fois, quel que soit le nombre de canaux qu'il écoute
+        FrameBroadcaster.broadcast(now.users.keySet(), null, msg);
+    }
+
+    private static void appendDelta(StringBuilder sb, String type, WebSocket ws, RoutingTable.UserInfo u, String fromChannel) {
+        if (sb.length() > 0) sb.append(',');
+        sb.append("{\"type\":\"").append(type).append("\",\"id\":\"").append(ws.hashCode())
+          .append("\",\"name\":\"").append(u.name.replace("\"", "")).append("\",\"channel\":\"").append(u.channel).append('"');
+        if (fromChannel != null) sb.append(",\"from\":\"").append(fromChannel).append('"');
+        sb.append('}');
+    }
+
+    /** Format attendu par le JS : { channelId: { users: [{id, name}], name, color } } — un seul parcours des utilisateurs. */
+    private static String snapshotJson(RoutingTable rt) {
+        ChannelRegistry.Defs defs = rt.channels;
+        StringBuilder[] users = new StringBuilder[defs.slots()];
+        // N'affiche que les membres dont c'est le canal principal
+        for (Map.Entry<WebSocket, RoutingTable.UserInfo> e : rt.users.entrySet()) {
+            RoutingTable.UserInfo u = e.getValue();
+            StringBuilder b = users[u.channelIndex];
+            if (b == null) users[u.channelIndex] = b = new StringBuilder();
+            else b.append(',');
+            b.append("{\"id\":\"").append(e.getKey().hashCode()).append("\",\"name\":\"").append(u.name.replace("\"", "")).append("\"}");
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (ChannelRegistry.Channel c : defs.ordered()) {
+            if (sb.length() > 1) sb.append(",");
+            sb.append("\"").append(c.id).append("\":{\"name\":\"").append(c.name).append("\",\"color\":\"").append(c.color)
+              .append("\",\"users\":[").append(users[c.index] != null ? users[c.index] : "").append("]}");
+        }
+        return sb.append("}").toString();
+    }
+}
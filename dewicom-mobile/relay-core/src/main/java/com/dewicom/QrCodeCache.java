@@ -0,0 +1,113 @@
+package com.dewicom;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * QR code d'appairage (URL du serveur) mis en cache : l'encodage ZXing et la compression PNG ne
+ * sont refaits que si l'URL change (IP locale ou protocole). Le PNG (niveaux de gris 1 bit) est
+ * écrit directement, sans Bitmap Android ni java.awt.
+ */
+final class QrCodeCache {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /** QR d'une URL : PNG, réponse JSON de /qr et ETag de /qr.png — immuable. */
+    static final class Qr {
+        final String url;
+        final byte[] png;
+        final String json;
+        final String etag;
+
+        Qr(String url, byte[] png) {
+            this.url = url;
+            this.png = png;
+            this.json = "{\"qr\":\"data:image/png;base64," + base64(png)
+                    + "\",\"url\":\"" + url + "\"}";
+            this.etag = "\"qr-" + Integer.toHexString(url.hashCode()) + "\"";
+        }
+    }
+
+    private volatile Qr current;
+
+    /** QR de url, régénéré seulement si url diffère de la précédente. */
+    Qr get(String url) throws WriterException {
+        Qr qr = current;
+        if (qr != null && qr.url.equals(url)) return qr;
+        synchronized (this) {
+            qr = current;
+            if (qr == null || !qr.url.equals(url)) current = qr = new Qr(url, encodePng(url));
+            return qr;
+        }
+    }
+
+    private static byte[] encodePng(String content) throws WriterException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 1);
+        BitMatrix matrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 300, 300, hints);
+        int w = matrix.getWidth(), h = matrix.getHeight();
+        // Une ligne = octet de filtre (0 : aucun) + pixels 1 bit, bit à 1 = blanc
+        int stride = (w + 7) / 8 + 1;
+        byte[] raw = new byte[h * stride];
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                if (!matrix.get(x, y)) raw[y * stride + 1 + (x >> 3)] |= 0x80 >>> (x & 7);
+        try {
+            ByteArrayOutputStream idat = new ByteArrayOutputStream();
+            try (DeflaterOutputStream z = new DeflaterOutputStream(idat, new Deflater(Deflater.BEST_COMPRESSION))) {
+                z.write(raw);
+            }
+            byte[] ihdr = {(byte) (w >>> 24), (byte) (w >>> 16), (byte) (w >>> 8), (byte) w,
+                           (byte) (h >>> 24), (byte) (h >>> 16), (byte) (h >>> 8), (byte) h,
+                           1, 0, 0, 0, 0}; // 1 bit, niveaux de gris, deflate, filtrage standard, non entrelacé
+            ByteArrayOutputStream out = new ByteArrayOutputStream(idat.size() + 64);
+            out.write(PNG_SIGNATURE);
+            writeChunk(out, "IHDR", ihdr);
+            writeChunk(out, "IDAT", idat.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // flux en mémoire
+        }
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) throws IOException {
+        int n = data.length;
+        out.write(new byte[]{(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+        byte[] t = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(t);
+        out.write(data);
+        CRC32 crc = new CRC32();
+        crc.update(t);
+        crc.update(data);
+        long c = crc.getValue();
+        out.write(new byte[]{(byte) (c >>> 24), (byte) (c >>> 16), (byte) (c >>> 8), (byte) c});
+    }
+
+    /** Base64 standard sans retour à la ligne (java.util.Base64 n'existe qu'à partir d'Android 8). */
+    private static String base64(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b = (data[i] & 0xFF) << 16
+                    | (i + 1 < data.length ? (data[i + 1] & 0xFF) << 8 : 0)
+                    | (i + 2 < data.length ? data[i + 2] & 0xFF : 0);
+            sb.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3F])
+              .append(i + 1 < data.length ? BASE64[(b >>> 6) & 0x3F] : '=')
+              .append(i + 2 < data.length ? BASE64[b & 0x3F] : '=');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.dewicom;
+
+import java.io.File;
+
+/**
+ * Ce que le relais attend de la plateforme qui l'héberge : assets web, stockage persistant et
+ * adresse réseau locale. Implémenté par AndroidRelayHost dans l'application et par
+ * HeadlessRelay pour un serveur dédié sur JVM.
+ */
+public interface RelayHost {
+
+    /** Arborescence contenant l'application web (dossier "public"). */
+    AssetSource assets();
+
+    /** Dossier privé persistant (identité TLS). */
+    File dataDir();
+
+    /** IPv4 locale annoncée sur le réseau et encodée dans le QR d'appairage, null si inconnue. */
+    String localIPv4();
+
+    /** Mode annoncé aux clients ("apk", "dedicated"…), voir MulticastDiscovery pour les priorités. */
+    String mode();
+}
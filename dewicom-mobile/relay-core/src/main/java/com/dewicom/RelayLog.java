@@ -0,0 +1,47 @@
+package com.dewicom;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Journalisation du relais, indépendante d'Android : mêmes appels que android.util.Log, vers un
+ * Sink interchangeable. Par défaut la console (relais headless) ; l'application Android installe
+ * un Sink vers logcat (AndroidRelayHost).
+ */
+public final class RelayLog {
+
+    /** Niveaux, mêmes valeurs que android.util.Log. */
+    public static final int DEBUG = 3, INFO = 4, WARN = 5, ERROR = 6;
+
+    public interface Sink {
+        void log(int level, String tag, String msg, Throwable tr);
+    }
+
+    private static volatile Sink sink = console(INFO);
+
+    private RelayLog() {}
+
+    public static void setSink(Sink s) { sink = s; }
+
+    /** Sink console : WARN et ERROR sur stderr, le reste sur stdout ; niveaux sous minLevel ignorés. */
+    public static Sink console(int minLevel) {
+        return (level, tag, msg, tr) -> {
+            if (level < minLevel) return;
+            PrintStream out = level >= WARN ? System.err : System.out;
+            String time = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT).format(new Date());
+            synchronized (RelayLog.class) {
+                out.println(time + " " + "??DIWE".charAt(level - 1) + "/" + tag + ": " + msg);
+                if (tr != null) tr.printStackTrace(out);
+            }
+        };
+    }
+
+    static void d(String tag, String msg)               { sink.log(DEBUG, tag, msg, null); }
+    static void i(String tag, String msg)               { sink.log(INFO, tag, msg, null); }
+    static void w(String tag, String msg)               { sink.log(WARN, tag, msg, null); }
+    static void w(String tag, String msg, Throwable tr) { sink.log(WARN, tag, msg, tr); }
+    static void e(String tag, String msg)               { sink.log(ERROR, tag, msg, null); }
+    static void e(String tag, String msg, Throwable tr) { sink.log(ERROR, tag, msg, tr); }
+}
@@ -0,0 +1,131 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Métriques d'exécution du relais, exposées par /api/metrics.
+ *
+ * Chemin audio : compteurs atomiques et histogramme à seaux fixes, aucun verrou ni allocation
+ * (compteurs indexés par canal, celui d'un canal n'est créé qu'à sa première trame). Les débits par seconde, l'état
+ * de chaque connexion et la mise en forme JSON sont calculés à la lecture.
+ */
+final class RelayMetrics {
+
+    /** Trafic audio d'un canal ; out est rattaché au premier canal parlé de la trame. */
+    static final class ChannelCounters {
+        final AtomicLong inFrames = new AtomicLong(), inBytes = new AtomicLong();
+        final AtomicLong outFrames = new AtomicLong(), outBytes = new AtomicLong();
+        // Dernière lecture (sous le verrou de json) pour les débits
+        private long lastInFrames, lastInBytes, lastOutFrames, lastOutBytes;
+    }
+
+    /** Par index de canal (ChannelRegistry) ; un index libéré puis réattribué repart de zéro (forget). */
+    private final AtomicReferenceArray<ChannelCounters> channels = new AtomicReferenceArray<>(ChannelRegistry.MAX_CHANNELS);
+
+    /** Réception dans onMessage → retour du dernier envoi de la trame (µs). */
+    final Histogram fanOut = new Histogram(100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000);
+    /** Acceptation TCP → ouverture WebSocket, TLS compris (µs). */
+    final Histogram handshake = new Histogram(1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000);
+
+    final AtomicLong wsOpened = new AtomicLong();
+    final AtomicLong wsClosed = new AtomicLong();
+
+    private long lastReadNanos = System.nanoTime();
+
+    ChannelCounters channel(int ch) {
+        ChannelCounters c = channels.get(ch);
+        if (c != null) return c;
+        c = new ChannelCounters();
+        return channels.compareAndSet(ch, null, c) ? c : channels.get(ch);
+    }
+
+    /** Canal supprimé : ses compteurs ne doivent pas passer au canal qui reprendra l'index. */
+    void forget(int ch) {
+        channels.set(ch, null);
+    }
+
+    /** Trame reçue d'un talker pour ses canaux parlés (index). */
+    void frameIn(int[] talk, int bytes) {
+        if (talk == null) return;
+        for (int ch : talk) {
+            ChannelCounters c = channel(ch);
+            c.inFrames.incrementAndGet();
+            c.inBytes.addAndGet(bytes);
+        }
+    }
+
+    /** copies envois de la trame (tous transports confondus), bytes au total. */
+    void frameOut(int[] talk, int copies, long bytes) {
+        if (talk == null || talk.length == 0 || copies == 0) return;
+        ChannelCounters c = channel(talk[0]);
+        c.outFrames.addAndGet(copies);
+        c.outBytes.addAndGet(bytes);
+    }
+
+    void opened(long handshakeNanos) {
+        wsOpened.incrementAndGet();
+        if (handshakeNanos > 0) handshake.recordNanos(handshakeNanos);
+    }
+
+    void closed() {
+        wsClosed.incrementAndGet();
+    }
+
+    /** Canaux (par id) : totaux et débits depuis la lecture précédente. */
+    synchronized void appendChannels(StringBuilder sb, ChannelRegistry.Defs defs) {
+        long now = System.nanoTime();
+        double secs = Math.max((now - lastReadNanos) / 1e9, 1e-3);
+        lastReadNanos = now;
+        sb.append('{');
+        boolean first = true;
+        for (ChannelRegistry.Channel ch : defs.ordered()) {
+            ChannelCounters c = channels.get(ch.index);
+            if (c == null) continue;
+            long inF = c.inFrames.get(), inB = c.inBytes.get(), outF = c.outFrames.get(), outB = c.outBytes.get();
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(ch.id).append("\":{")
+              .append("\"inFrames\":").append(inF).append(",\"inBytes\":").append(inB)
+              .append(",\"outFrames\":").append(outF).append(",\"outBytes\":").append(outB)
+              .append(",\"inFramesPerSec\":").append(Math.round((inF - c.lastInFrames) / secs))
+              .append(",\"inBytesPerSec\":").append(Math.round((inB - c.lastInBytes) / secs))
+              .append(",\"outFramesPerSec\":").append(Math.round((outF - c.lastOutFrames) / secs))
+              .append(",\"outBytesPerSec\":").append(Math.round((outB - c.lastOutBytes) / secs))
+              .append('}');
+            c.lastInFrames = inF; c.lastInBytes = inB; c.lastOutFrames = outF; c.lastOutBytes = outB;
+        }
+        sb.append('}');
+    }
+
+    /** Une entrée par connexion : file sortante, délestage, séquencement de son audio entrant. */
+    static void appendConnections(StringBuilder sb, RoutingTable rt) {
+        sb.append('[');
+        boolean first = true;
+        for (Map.Entry<WebSocket, RoutingTable.UserInfo> e : rt.users.entrySet()) {
+            WebSocket ws = e.getKey();
+            RoutingTable.UserInfo u = e.getValue();
+            ClientSession session = ws.getAttachment();
+            if (!first) sb.append(',');
+            first = false;
+            sb.append("{\"id\":\"").append(ws.hashCode()).append("\",\"name\":\"").append(u.name.replace("\"", ""))
+              .append("\",\"channel\":\"").append(u.channel)
+              .append("\",\"codec\":\"").append(AudioCodec.NAMES[u.codec])
+              .append("\",\"transport\":\"").append(u.multicast ? "multicast" : u.udp != null ? "udp" : "ws")
+              .append("\",\"queued\":").append(Backpressure.queued(ws));
+            if (session != null) {
+                FrameSequencer seq = session.sequencer;
+                sb.append(",\"shedding\":").append(session.outbound.shedding)
+                  .append(",\"shedFrames\":").append(session.outbound.shedFrames.get())
+                  .append(",\"framesIn\":").append(seq.frames)
+                  .append(",\"lateDrops\":").append(seq.drops)
+                  .append(",\"gaps\":").append(seq.gaps);
+            }
+            sb.append('}');
+        }
+        sb.append(']');
+    }
+}
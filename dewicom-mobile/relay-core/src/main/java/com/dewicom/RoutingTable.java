@@ -0,0 +1,272 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Snapshot immuable de l'état de routage du relais (utilisateurs + membres par canal).
+ *
+ * Les événements de contrôle (join, switch-channel, update-*-channels, close) construisent
+ * un nouveau snapshot et le publient d'un bloc ; le chemin audio lit la référence courante
+ * sans verrou ni allocation. Les canaux sont désignés par leur index dense (ChannelRegistry) :
+ * membres et abonnés multicast sont indexés par canal, 30 canaux coûtent autant que 5 à
+ * router. Une modification du registre republie la table (withChannels).
+ *
+ * Abonnements en bitsets (ChannelBits) : chaque utilisateur a le masque des canaux qu'il entend
+ * (principal + écoutés), rangé à plat dans hears ; les auditeurs d'un ensemble de canaux parlés
+ * (fan-out, sonnerie) sont ceux dont le masque l'intersecte, sans ensemble intermédiaire ni
+ * déduplication.
+ *
+ * Les destinataires audio de chaque talker sont précalculés à la construction : une trame coûte
+ * un seul parcours de tableau. Les talkers ayant les mêmes canaux parlés partagent le même
+ * tableau (l'émetteur y figure éventuellement et est filtré à l'envoi).
+ * Ils sont aussi répartis par transport et codec négocié (route), pour ne transcoder qu'une fois
+ * par codec et n'envoyer en UDP qu'aux clients enregistrés. Les clients abonnés au multicast
+ * (MulticastAudio) ne figurent dans aucune route : ils reçoivent l'audio par les groupes des
+ * canaux qu'ils entendent (multicast(ch)).
+ */
+final class RoutingTable {
+
+    static final WebSocket[] NO_SOCKETS = new WebSocket[0];
+    /** Routes audio : index codec pour le WebSocket, UDP + codec pour le transport UDP. */
+    static final int UDP = AudioCodec.COUNT;
+    static final int ROUTES = 2 * AudioCodec.COUNT;
+    private static final WebSocket[][] NO_ROUTES = new WebSocket[ROUTES][0];
+    private static final int WORDS = ChannelBits.WORDS;
+
+    /** Données utilisateur par socket — immuables, remplacées à chaque modification. */
+    static final class UserInfo {
+        final String name, channel, clientId;
+        /** Codec négocié au join pour l'audio reçu (AudioCodec.PCM pour les anciens clients). */
+        final int codec;
+        /** Adresse UDP enregistrée (UdpAudioTransport), null : audio reçu par le WebSocket. */
+        final InetSocketAddress udp;
+        /** Audio reçu par les groupes multicast des canaux entendus (MulticastAudio), hors routes unicast. */
+        final boolean multicast;
+        /** Définitions contre lesquelles les index ci-dessous sont résolus. */
+        final ChannelRegistry.Defs defs;
+        /** Index du canal principal ; canal inconnu ou supprimé : premier canal du registre. */
+        final int channelIndex;
+        /** Canaux écoutés et parlés demandés (bitsets ChannelBits, canaux de defs uniquement). */
+        final long[] listen, talk;
+        /** Canaux entendus : principal + écoutés. */
+        final long[] hears;
+        /** Canaux effectivement parlés : talk, ou le canal principal si vide — masque et index croissants. */
+        final long[] talkMask;
+        final int[] talkTargets;
+
+        UserInfo(String name, String channel, String clientId, int codec, InetSocketAddress udp, boolean multicast,
+                 long[] listen, long[] talk, ChannelRegistry.Defs defs) {
+            ChannelRegistry.Channel main = defs.get(channel);
+            if (main == null) main = defs.first();
+            this.name = name; this.channel = main.id; this.clientId = clientId; this.codec = codec; this.udp = udp;
+            this.multicast = multicast;
+            this.defs = defs;
+            this.channelIndex = main.index;
+            this.listen = listen;
+            this.talk = talk;
+            this.hears = ChannelBits.or(listen, ChannelBits.of(channelIndex));
+            this.talkMask = ChannelBits.isEmpty(talk) ? ChannelBits.of(channelIndex) : talk;
+            this.talkTargets = ChannelBits.indices(talkMask);
+        }
+
+        UserInfo withChannel(String ch)          { return new UserInfo(name, ch, clientId, codec, udp, multicast, listen, talk, defs); }
+        UserInfo withListenChannels(long[] l)     { return new UserInfo(name, channel, clientId, codec, udp, multicast, l, talk, defs); }
+        UserInfo withTalkChannels(long[] t)       { return new UserInfo(name, channel, clientId, codec, udp, multicast, listen, t, defs); }
+        UserInfo withUdp(InetSocketAddress peer)  { return new UserInfo(name, channel, clientId, codec, peer, multicast, listen, talk, defs); }
+        UserInfo withMulticast(boolean m)         { return new UserInfo(name, channel, clientId, codec, udp, m, listen, talk, defs); }
+
+        /** Même utilisateur résolu contre d'autres définitions (registre modifié). */
+        UserInfo in(ChannelRegistry.Defs d) {
+            return d == defs ? this : new UserInfo(name, channel, clientId, codec, udp, multicast,
+                    ChannelBits.retain(listen, defs, d), ChannelBits.retain(talk, defs, d), d);
+        }
+
+        /** Le socket reçoit l'audio du canal d'index ch s'il y est (canal principal) ou s'il l'écoute. */
+        boolean hears(int ch) {
+            return ChannelBits.has(hears, ch);
+        }
+    }
+
+    static final RoutingTable EMPTY = new RoutingTable(ChannelRegistry.DEFAULTS, Collections.<WebSocket, UserInfo>emptyMap());
+
+    /** Canaux du registre au moment de la construction ; tous les UserInfo y sont résolus. */
+    final ChannelRegistry.Defs channels;
+    final Map<WebSocket, UserInfo> users;
+    /** Utilisateurs à plat et leurs masques hears, WORDS mots chacun (sockets[k] ↔ hears[k * WORDS…]). */
+    private final WebSocket[] sockets;
+    private final long[] hears;
+    /** Membres par index de canal (canal principal ou écouté). */
+    private final WebSocket[][] members;
+    /** Canaux entendus par au moins un client multicast : seuls ceux-là sont émis sur leur groupe. */
+    private final long[] multicastChannels;
+    private final Map<WebSocket, WebSocket[]> recipients;
+    private final Map<WebSocket, WebSocket[][]> recipientsByCodec;
+
+    private RoutingTable(ChannelRegistry.Defs channels, Map<WebSocket, UserInfo> users) {
+        this.channels = channels;
+        this.users = users;
+        int n = users.size(), slots = channels.slots();
+        WebSocket[] flat = new WebSocket[n];
+        long[] masks = new long[n * WORDS];
+        long[] mcast = ChannelBits.NONE;
+        int[] counts = new int[slots];
+        int k = 0;
+        for (Map.Entry<WebSocket, UserInfo> e : users.entrySet()) {
+            UserInfo u = e.getValue();
+            flat[k] = e.getKey();
+            System.arraycopy(u.hears, 0, masks, k * WORDS, WORDS);
+            for (int ch : ChannelBits.indices(u.hears)) counts[ch]++;
+            if (u.multicast) mcast = ChannelBits.or(mcast, u.hears);
+            k++;
+        }
+        this.sockets = flat;
+        this.hears = masks;
+        this.multicastChannels = mcast;
+        WebSocket[][] chs = new WebSocket[slots][];
+        for (int ch = 0; ch < slots; ch++) chs[ch] = counts[ch] == 0 ? NO_SOCKETS : new WebSocket[counts[ch]];
+        int[] fill = new int[slots];
+        for (k = 0; k < n; k++)
+            for (int ch : ChannelBits.indices(users.get(flat[k]).hears)) chs[ch][fill[ch]++] = flat[k];
+        this.members = chs;
+
+        Map<Object, WebSocket[]> byMask = new HashMap<>();
+        Map<Object, WebSocket[][]> byCodecMask = new HashMap<>();
+        Map<WebSocket, WebSocket[]> rcpt = new HashMap<>();
+        Map<WebSocket, WebSocket[][]> rcptByCodec = new HashMap<>();
+        for (Map.Entry<WebSocket, UserInfo> e : users.entrySet()) {
+            long[] talk = e.getValue().talkMask;
+            Object key = ChannelBits.key(talk);
+            WebSocket[] dests = byMask.get(key);
+            if (dests == null) {
+                dests = listeners(talk);
+                byMask.put(key, dests);
+                byCodecMask.put(key, splitByCodec(users, dests));
+            }
+            rcpt.put(e.getKey(), dests);
+            rcptByCodec.put(e.getKey(), byCodecMask.get(key));
+        }
+        this.recipients = rcpt;
+        this.recipientsByCodec = rcptByCodec;
+    }
+
+    private static WebSocket[][] splitByCodec(Map<WebSocket, UserInfo> users, WebSocket[] dests) {
+        int[] counts = new int[ROUTES];
+        for (WebSocket ws : dests) {
+            int r = routeOf(users, ws);
+            if (r >= 0) counts[r]++;
+        }
+        WebSocket[][] split = new WebSocket[ROUTES][];
+        for (int r = 0; r < ROUTES; r++) split[r] = counts[r] == 0 ? NO_SOCKETS : new WebSocket[counts[r]];
+        int[] fill = new int[ROUTES];
+        for (WebSocket ws : dests) {
+            int r = routeOf(users, ws);
+            if (r >= 0) split[r][fill[r]++] = ws;
+        }
+        return split;
+    }
+
+    /** Route unicast de ws, -1 s'il reçoit l'audio en multicast. */
+    private static int routeOf(Map<WebSocket, UserInfo> users, WebSocket ws) {
+        UserInfo u = users.get(ws);
+        if (u == null) return AudioCodec.PCM;
+        if (u.multicast) return -1;
+        return u.udp != null ? UDP + u.codec : u.codec;
+    }
+
+    /** Utilisateurs entendant au moins un canal de mask : deux passes d'ET binaires sur hears, une seule allocation. */
+    WebSocket[] listeners(long[] mask) {
+        int n = 0;
+        for (int k = 0; k < sockets.length; k++) if (ChannelBits.intersects(hears, k * WORDS, mask)) n++;
+        if (n == 0) return NO_SOCKETS;
+        WebSocket[] out = new WebSocket[n];
+        int i = 0;
+        for (int k = 0; k < sockets.length; k++) if (ChannelBits.intersects(hears, k * WORDS, mask)) out[i++] = sockets[k];
+        return out;
+    }
+
+    UserInfo user(WebSocket ws) { return users.get(ws); }
+
+    /** Membres du canal d'index ch (jamais null). */
+    WebSocket[] members(int ch) {
+        return ch >= 0 && ch < members.length ? members[ch] : NO_SOCKETS;
+    }
+
+    /** Membres du canal id (plan de contrôle : résolution de l'id). */
+    WebSocket[] members(String id) {
+        return members(channels.indexOf(id));
+    }
+
+    /** Le canal d'index ch a-t-il au moins un auditeur multicast ? */
+    boolean multicast(int ch) {
+        return ChannelBits.has(multicastChannels, ch);
+    }
+
+    /** Destinataires dédupliqués de l'audio émis par ws sur ses canaux parlés (peut contenir ws). */
+    WebSocket[] recipients(WebSocket ws) {
+        WebSocket[] r = recipients.get(ws);
+        return r != null ? r : NO_SOCKETS;
+    }
+
+    /** Destinataires de ws répartis par route (codec, UDP + codec), jamais null. */
+    WebSocket[][] recipientsByCodec(WebSocket ws) {
+        WebSocket[][] r = recipientsByCodec.get(ws);
+        return r != null ? r : NO_ROUTES;
+    }
+
+    /** Destinataires pour une liste de canaux ad hoc (audio-chunk director avec talkChannels différents). */
+    WebSocket[] recipients(int[] talk) {
+        return listeners(ChannelBits.of(talk));
+    }
+
+    WebSocket[][] recipientsByCodec(int[] talk) {
+        return splitByCodec(users, listeners(ChannelBits.of(talk)));
+    }
+
+    RoutingTable with(WebSocket ws, UserInfo info) {
+        Map<WebSocket, UserInfo> u = new HashMap<>(users);
+        u.put(ws, info.in(channels));
+        return new RoutingTable(channels, Collections.unmodifiableMap(u));
+    }
+
+    /**
+     * Même table sur de nouvelles définitions de canaux : les membres d'un canal supprimé passent
+     * sur le premier canal, ses écoutes et canaux parlés disparaissent.
+     */
+    RoutingTable withChannels(ChannelRegistry.Defs defs) {
+        if (defs == channels) return this;
+        Map<WebSocket, UserInfo> u = new HashMap<>();
+        for (Map.Entry<WebSocket, UserInfo> e : users.entrySet()) u.put(e.getKey(), e.getValue().in(defs));
+        return new RoutingTable(defs, Collections.unmodifiableMap(u));
+    }
+
+    RoutingTable without(WebSocket ws) {
+        if (!users.containsKey(ws)) return this;
+        Map<WebSocket, UserInfo> u = new HashMap<>(users);
+        u.remove(ws);
+        return new RoutingTable(channels, Collections.unmodifiableMap(u));
+    }
+
+    /**
+     * Enregistre ws et retire toute autre entrée du même client (reconnexion) :
+     * même clientId, ou même nom si le client n'envoie pas d'identifiant.
+     */
+    RoutingTable join(WebSocket ws, UserInfo info) {
+        Map<WebSocket, UserInfo> u = new HashMap<>(users);
+        // Iterator.remove plutôt que removeIf (API 24, minSdk 21)
+        Iterator<Map.Entry<WebSocket, UserInfo>> it = u.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WebSocket, UserInfo> e = it.next();
+            if (e.getKey() == ws) continue;
+            UserInfo other = e.getValue();
+            if (info.clientId.isEmpty() ? info.name.equals(other.name) : info.clientId.equals(other.clientId)) it.remove();
+        }
+        u.put(ws, info.in(channels));
+        return new RoutingTable(channels, Collections.unmodifiableMap(u));
+    }
+}
@@ -0,0 +1,51 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocketAdapter;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketServerFactory;
+import org.java_websocket.drafts.Draft;
+
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Fabrique de connexions du serveur WebSocket (en clair ou TLS, par délégation) qui attache la
+ * ClientSession dès l'acceptation TCP : onOpen mesure ainsi la poignée de main complète
+ * (TLS + upgrade HTTP) depuis sa date de création.
+ */
+final class SessionSocketFactory implements WebSocketServerFactory {
+    private final WebSocketServerFactory delegate;
+    private final StringInterner channelIds;
+
+    SessionSocketFactory(WebSocketServerFactory delegate, StringInterner channelIds) {
+        this.delegate = delegate;
+        this.channelIds = channelIds;
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(WebSocketAdapter a, Draft d) {
+        WebSocketImpl ws = delegate.createWebSocket(a, d);
+        ws.setAttachment(new ClientSession(channelIds));
+        return ws;
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(WebSocketAdapter a, List<Draft> drafts) {
+        WebSocketImpl ws = delegate.createWebSocket(a, drafts);
+        ws.setAttachment(new ClientSession(channelIds));
+        return ws;
+    }
+
+    @Override
+    public ByteChannel wrapChannel(SocketChannel channel, SelectionKey key) throws IOException {
+        return delegate.wrapChannel(channel, key);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
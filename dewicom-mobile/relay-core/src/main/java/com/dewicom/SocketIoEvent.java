@@ -0,0 +1,276 @@
+package com.dewicom;
+
+/**
+ * Événement Socket.IO décodé en une seule passe, réutilisable d'un message à l'autre.
+ *
+ * Reconnaît l'enveloppe Engine.IO/Socket.IO ("42[...]", "4[...]", "45<n>-[...]", namespace et
+ * ack id optionnels) puis le tableau ["event", {payload}] : seules les clés de premier niveau
+ * du payload utiles au relais sont extraites, le reste (chunk base64, objets et tableaux
+ * imbriqués, chaînes échappées) est sauté sans allocation. Les ids de canal et le nom
+ * d'événement sont internés ; seuls name/channel/clientId allouent une chaîne.
+ */
+final class SocketIoEvent {
+
+    static final int EVENT = 2;
+    static final int BINARY_EVENT = 5;
+
+    /** Noms d'événements internés (comparables par ==). */
+    static final StringInterner EVENTS = new StringInterner(
+            "join", "switch-channel", "update-listen-channels", "update-talk-channels",
+            "ptt-start", "ptt-stop", "audio-chunk", "call-ring", "presence-sync",
+            "multicast-fallback");
+
+    private final StringInterner channels;
+    private final StringBuilder sb = new StringBuilder(64);
+
+    int type;
+    int attachments;
+    /** Index du '[' ouvrant le tableau d'arguments dans le message. */
+    int payloadStart;
+    String event;
+    String name, channel, clientId;
+    String[] listenChannels = new String[8];
+    int listenCount;
+    boolean hasListen;
+    String[] talkChannels = new String[8];
+    int talkCount;
+    boolean hasTalk;
+    /** Codec de la pièce jointe audio ("codec"), -1 si absent. */
+    int codec;
+    /** Premier codec supporté de la liste de préférence du client ("codecs"), -1 si aucun. */
+    int preferredCodec;
+    /** Séquence et horodatage de capture (ms, horloge client) de la trame audio, -1 si absents. */
+    long seq, ts;
+    /** Le client sait recevoir/émettre l'audio en UDP ("udp":true au join). */
+    boolean udp;
+    /** Le client sait s'abonner aux groupes multicast audio ("multicast":true au join). */
+    boolean multicast;
+
+    // Jeton courant (chaîne JSON) : bornes dans le message et présence d'échappements
+    private int tokStart, tokEnd;
+    private boolean tokEscaped;
+    private long tokLong;
+
+    SocketIoEvent(StringInterner channels) {
+        this.channels = channels;
+    }
+
+    private void reset() {
+        type = 0; attachments = 0; payloadStart = -1;
+        event = null; name = null; channel = null; clientId = null;
+        listenCount = 0; hasListen = false;
+        talkCount = 0; hasTalk = false;
+        codec = -1; preferredCodec = -1;
+        seq = -1; ts = -1;
+        udp = false; multicast = false;
+    }
+
+    /** Décode text ; retourne false si ce n'est pas un événement Socket.IO exploitable. */
+    boolean parse(String text) {
+        reset();
+        try {
+            return parseEnvelope(text);
+        } catch (RuntimeException malformed) {
+            event = null;
+            return false;
+        }
+    }
+
+    private boolean parseEnvelope(String s) {
+        int n = s.length();
+        if (n == 0 || s.charAt(0) != '4') return false;
+        int i = 1;
+        char c = i < n ? s.charAt(i) : 0;
+        if (c == '2') { type = EVENT; i++; }
+        else if (c == '5') {
+            type = BINARY_EVENT; i++;
+            int count = 0;
+            while (i < n && isDigit(s.charAt(i))) count = count * 10 + (s.charAt(i++) - '0');
+            if (i >= n || s.charAt(i) != '-') return false;
+            attachments = count; i++;
+        }
+        else if (c == '[') type = EVENT; // forme courte "4[...]"
+        else return false; // ack (43), erreur de connexion (44)… : ignorés
+        if (i < n && s.charAt(i) == '/') {
+            while (i < n && s.charAt(i) != ',') i++;
+            i++;
+        }
+        while (i < n && isDigit(s.charAt(i))) i++; // ack id
+        if (i >= n || s.charAt(i) != '[') return false;
+        payloadStart = i;
+        i = skipWs(s, i + 1);
+        if (s.charAt(i) != '"') return false;
+        i = readString(s, i);
+        event = tokEscaped ? EVENTS.intern(decode(s), 0, sb.length()) : EVENTS.intern(s, tokStart, tokEnd);
+        i = skipWs(s, i);
+        if (s.charAt(i) == ',') {
+            i = skipWs(s, i + 1);
+            if (s.charAt(i) == '{') parseObject(s, i);
+        }
+        return true;
+    }
+
+    private int parseObject(String s, int i) {
+        i = skipWs(s, i + 1);
+        if (s.charAt(i) == '}') return i + 1;
+        while (true) {
+            if (s.charAt(i) != '"') throw new IllegalArgumentException();
+            i = readString(s, i);
+            int kStart = tokStart, kLen = tokEnd - tokStart;
+            boolean kEsc = tokEscaped;
+            i = skipWs(s, i);
+            if (s.charAt(i) != ':') throw new IllegalArgumentException();
+            i = skipWs(s, i + 1);
+            char v = s.charAt(i);
+            if (!kEsc && v == '"' && isKey(s, kStart, kLen, "name"))              { i = readString(s, i); name = materialize(s); }
+            else if (!kEsc && v == '"' && isKey(s, kStart, kLen, "channel"))      { i = readString(s, i); channel = internToken(s); }
+            else if (!kEsc && v == '"' && isKey(s, kStart, kLen, "clientId"))     { i = readString(s, i); clientId = materialize(s); }
+            else if (!kEsc && v == '[' && isKey(s, kStart, kLen, "listenChannels")) { i = readChannelArray(s, i, true); hasListen = true; }
+            else if (!kEsc && v == '[' && isKey(s, kStart, kLen, "talkChannels"))   { i = readChannelArray(s, i, false); hasTalk = true; }
+            else if (!kEsc && v == '"' && isKey(s, kStart, kLen, "codec"))        { i = readString(s, i); codec = AudioCodec.byName(s, tokStart, tokEnd); }
+            else if (!kEsc && v == '[' && isKey(s, kStart, kLen, "codecs"))       { i = readCodecArray(s, i); }
+            else if (!kEsc && isDigit(v) && isKey(s, kStart, kLen, "seq"))        { i = readLong(s, i); seq = tokLong; }
+            else if (!kEsc && isDigit(v) && isKey(s, kStart, kLen, "ts"))         { i = readLong(s, i); ts = tokLong; }
+            else if (!kEsc && v == 't' && isKey(s, kStart, kLen, "udp"))          { i = skipValue(s, i); udp = true; }
+            else if (!kEsc && v == 't' && isKey(s, kStart, kLen, "multicast"))    { i = skipValue(s, i); multicast = true; }
+            else i = skipValue(s, i);
+            i = skipWs(s, i);
+            char c = s.charAt(i);
+            if (c == '}') return i + 1;
+            if (c != ',') throw new IllegalArgumentException();
+            i = skipWs(s, i + 1);
+        }
+    }
+
+    /** Tableau d'ids de canal ; les éléments non-chaîne ou vides sont ignorés. */
+    private int readChannelArray(String s, int i, boolean listen) {
+        i = skipWs(s, i + 1);
+        if (s.charAt(i) == ']') return i + 1;
+        while (true) {
+            if (s.charAt(i) == '"') {
+                i = readString(s, i);
+                if (tokEnd > tokStart) addChannel(internToken(s), listen);
+            } else {
+                i = skipValue(s, i);
+            }
+            i = skipWs(s, i);
+            char c = s.charAt(i);
+            if (c == ']') return i + 1;
+            if (c != ',') throw new IllegalArgumentException();
+            i = skipWs(s, i + 1);
+        }
+    }
+
+    /** Liste de préférence des codecs : retient le premier que le relais supporte. */
+    private int readCodecArray(String s, int i) {
+        i = skipWs(s, i + 1);
+        if (s.charAt(i) == ']') return i + 1;
+        while (true) {
+            if (s.charAt(i) == '"') {
+                i = readString(s, i);
+                int id = AudioCodec.byName(s, tokStart, tokEnd);
+                if (preferredCodec < 0 && id >= 0) preferredCodec = id;
+            } else {
+                i = skipValue(s, i);
+            }
+            i = skipWs(s, i);
+            char c = s.charAt(i);
+            if (c == ']') return i + 1;
+            if (c != ',') throw new IllegalArgumentException();
+            i = skipWs(s, i + 1);
+        }
+    }
+
+    private void addChannel(String id, boolean listen) {
+        if (listen) {
+            if (listenCount == listenChannels.length) listenChannels = java.util.Arrays.copyOf(listenChannels, listenCount * 2);
+            listenChannels[listenCount++] = id;
+        } else {
+            if (talkCount == talkChannels.length) talkChannels = java.util.Arrays.copyOf(talkChannels, talkCount * 2);
+            talkChannels[talkCount++] = id;
+        }
+    }
+
+    /** Lit une chaîne JSON commençant en i (sur le '"') ; retourne l'index après le '"' fermant. */
+    private int readString(String s, int i) {
+        int j = i + 1;
+        boolean esc = false;
+        while (true) {
+            char c = s.charAt(j);
+            if (c == '"') break;
+            if (c == '\\') { esc = true; j += 2; continue; }
+            j++;
+        }
+        tokStart = i + 1; tokEnd = j; tokEscaped = esc;
+        return j + 1;
+    }
+
+    /** Entier positif commençant en i ; une éventuelle partie décimale est ignorée. */
+    private int readLong(String s, int i) {
+        long v = 0;
+        char c;
+        while (isDigit(c = s.charAt(i))) { v = v * 10 + (c - '0'); i++; }
+        tokLong = v;
+        return skipValue(s, i);
+    }
+
+    private int skipValue(String s, int i) {
+        char c = s.charAt(i);
+        if (c == '"') return readString(s, i);
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (true) {
+                c = s.charAt(i);
+                if (c == '"') { i = readString(s, i); continue; }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') { if (--depth == 0) return i + 1; }
+                i++;
+            }
+        }
+        // nombre, true, false, null
+        while (true) {
+            c = s.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c <= ' ') return i;
+            i++;
+        }
+    }
+
+    private String materialize(String s) {
+        return tokEscaped ? decode(s).toString() : s.substring(tokStart, tokEnd);
+    }
+
+    private String internToken(String s) {
+        return tokEscaped ? channels.intern(decode(s), 0, sb.length()) : channels.intern(s, tokStart, tokEnd);
+    }
+
+    /** Décode les échappements JSON du jeton courant dans le tampon réutilisable. */
+    private StringBuilder decode(String s) {
+        sb.setLength(0);
+        for (int i = tokStart; i < tokEnd; i++) {
+            char c = s.charAt(i);
+            if (c != '\\') { sb.append(c); continue; }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u': sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16)); i += 4; break;
+                default:  sb.append(e); // \" \\ \/
+            }
+        }
+        return sb;
+    }
+
+    private static boolean isKey(String s, int start, int len, String key) {
+        return len == key.length() && s.regionMatches(start, key, 0, len);
+    }
+
+    private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+
+    private static int skipWs(String s, int i) {
+        while (s.charAt(i) <= ' ') i++;
+        return i;
+    }
+}
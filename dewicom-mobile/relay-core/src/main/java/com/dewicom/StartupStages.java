@@ -0,0 +1,84 @@
+package com.dewicom;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Étapes du démarrage du serveur, exécutées en parallèle quand elles sont indépendantes
+ * (identité TLS, assets, plans audio) et chronométrées une à une.
+ */
+final class StartupStages {
+
+    /** Une étape ; ses erreurs d'E/S font échouer le démarrage. */
+    interface Step<T> {
+        T call() throws IOException;
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> millis = new LinkedHashMap<>(); // sous this
+    private final ExecutorService executor;
+
+    StartupStages(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "dewicom-startup-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Lance une étape en arrière-plan. */
+    <T> Future<T> submit(String name, Step<T> task) {
+        return executor.submit(() -> run(name, task));
+    }
+
+    /** Exécute une étape sur le thread appelant. */
+    <T> T run(String name, Step<T> task) throws IOException {
+        long t = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            record(name, System.nanoTime() - t);
+        }
+    }
+
+    /** Résultat d'une étape lancée par submit ; son échec est remonté en IOException. */
+    static <T> T await(Future<T> stage) throws IOException {
+        try {
+            return stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Démarrage interrompu", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Étape de démarrage en échec: " + cause, cause);
+        }
+    }
+
+    /** Fin du démarrage : durée totale enregistrée, threads d'étapes libérés. */
+    void finish() {
+        record("total", System.nanoTime() - startNanos);
+        executor.shutdownNow();
+    }
+
+    private synchronized void record(String name, long nanos) {
+        millis.put(name, nanos / 1_000_000);
+    }
+
+    /** {"tls":812,"assets":40,…,"total":905} (ms) */
+    synchronized String json() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, Long> e : millis.entrySet()) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"').append(e.getKey()).append("\":").append(e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+}
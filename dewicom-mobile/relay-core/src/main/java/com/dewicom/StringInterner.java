@@ -0,0 +1,71 @@
+package com.dewicom;
+
+/**
+ * Table d'internement (identifiants de canal, noms d'événements) : retrouve l'instance
+ * canonique d'une chaîne directement depuis une plage de caractères du message, sans
+ * créer de sous-chaîne.
+ *
+ * Lecture sans verrou (tableau publié en volatile, copy-on-write à l'ajout) ; au-delà de
+ * MAX_ENTRIES les chaînes inconnues sont simplement allouées sans être internées.
+ */
+final class StringInterner {
+    private static final int MAX_ENTRIES = 256;
+
+    private volatile String[] table = new String[64];
+    private int size = 0;
+
+    StringInterner(String... initial) {
+        for (String id : initial) intern(id, 0, id.length());
+    }
+
+    /** Instance canonique de s[from, to). */
+    String intern(CharSequence s, int from, int to) {
+        int h = hash(s, from, to);
+        String[] t = table;
+        int mask = t.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String e = t[i];
+            if (e == null) break;
+            if (e.hashCode() == h && regionEquals(e, s, from, to)) return e;
+        }
+        return add(s.subSequence(from, to).toString());
+    }
+
+    private synchronized String add(String id) {
+        String[] t = table;
+        int mask = t.length - 1;
+        int h = id.hashCode();
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            if (t[i] == null) break;
+            if (t[i].equals(id)) return t[i];
+        }
+        if (size >= MAX_ENTRIES) return id;
+        int cap = (size + 1) * 2 > t.length ? t.length * 2 : t.length;
+        String[] n = new String[cap];
+        for (String e : t) if (e != null) put(n, e);
+        put(n, id);
+        size++;
+        table = n;
+        return id;
+    }
+
+    private static void put(String[] t, String id) {
+        int mask = t.length - 1;
+        int i = id.hashCode() & mask;
+        while (t[i] != null) i = (i + 1) & mask;
+        t[i] = id;
+    }
+
+    /** Même fonction que String.hashCode(), calculée sur la plage. */
+    private static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + s.charAt(i);
+        return h;
+    }
+
+    private static boolean regionEquals(String e, CharSequence s, int from, int to) {
+        if (e.length() != to - from) return false;
+        for (int i = 0; i < e.length(); i++) if (e.charAt(i) != s.charAt(from + i)) return false;
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+package com.dewicom;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Identité TLS du serveur (HTTPS/WSS) : paire de clés + certificat self-signed, générés une
+ * seule fois puis conservés dans le stockage privé de l'hôte (RelayHost.dataDir). Un redémarrage ne coûte
+ * plus une génération RSA (plusieurs secondes sur un téléphone d'entrée de gamme) et les clients
+ * revoient le même certificat.
+ *
+ * L'identité ECDSA P-256 est optionnelle : poignée de main moins coûteuse pour l'hôte que RSA-2048.
+ * Le cache de sessions serveur est dimensionné pour que les beltpacks qui se reconnectent
+ * reprennent leur session TLS au lieu de refaire une poignée de main complète.
+ */
+final class TlsIdentity {
+    private static final String TAG = "TlsIdentity";
+
+    private static final String ALIAS = "dewicom";
+    private static final char[] PASSWORD = "dewicom".toCharArray();
+    private static final long VALIDITY_MS = 10L * 365 * 24 * 60 * 60 * 1000; // 10 ans
+    /** Renouvelée quand il reste moins de 30 jours de validité. */
+    private static final long RENEW_MARGIN_MS = 30L * 24 * 60 * 60 * 1000;
+
+    static final int SESSION_CACHE_SIZE = 256;
+    static final int SESSION_TIMEOUT_S = 24 * 60 * 60;
+
+    private TlsIdentity() {}
+
+    /** SSLContext serveur sur l'identité persistée dans dir (générée au premier appel) ; null si TLS indisponible. */
+    static SSLContext serverContext(File dir, boolean ecdsa) {
+        try {
+            File file = new File(dir, ecdsa ? "tls-ecdsa.keystore" : "tls-rsa.keystore");
+            KeyStore ks = load(file);
+            if (ks == null) {
+                ks = generate(ecdsa);
+                if (ks == null) return null;
+                store(ks, file);
+            }
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(ks, PASSWORD);
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(kmf.getKeyManagers(), null, null);
+            SSLSessionContext sessions = ctx.getServerSessionContext();
+            if (sessions != null) {
+                sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessions.setSessionTimeout(SESSION_TIMEOUT_S);
+            }
+            return ctx;
+        } catch (Exception e) {
+            RelayLog.w(TAG, "Impossible de préparer le contexte TLS: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Identité persistée encore valide, null si absente, illisible ou proche de l'expiration. */
+    private static KeyStore load(File file) {
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+            ks.load(in, PASSWORD);
+            Certificate cert = ks.getCertificate(ALIAS);
+            if (!(cert instanceof X509Certificate) || !(ks.getKey(ALIAS, PASSWORD) instanceof PrivateKey)) return null;
+            ((X509Certificate) cert).checkValidity(new Date(System.currentTimeMillis() + RENEW_MARGIN_MS));
+            RelayLog.d(TAG, "Certificat TLS réutilisé (" + file.getName() + ")");
+            return ks;
+        } catch (Exception e) {
+            RelayLog.w(TAG, "Identité TLS persistée inutilisable, régénération: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void store(KeyStore ks, File file) {
+        // Écriture dans un fichier temporaire puis renommage : jamais de keystore tronqué
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            ks.store(out, PASSWORD);
+        } catch (Exception e) {
+            RelayLog.w(TAG, "Identité TLS non persistée: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    private static KeyStore generate(boolean ecdsa) throws Exception {
+        KeyPair kp;
+        String sigAlg;
+        if (ecdsa) {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+            kpg.initialize(new ECGenParameterSpec("secp256r1"));
+            kp = kpg.generateKeyPair();
+            sigAlg = "SHA256withECDSA";
+        } else {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+            kpg.initialize(2048);
+            kp = kpg.generateKeyPair();
+            sigAlg = "SHA256WithRSA";
+        }
+
+        X509Certificate cert = generateSelfSignedCert(kp, sigAlg);
+        if (cert == null) return null;
+
+        KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        ks.load(null, null);
+        ks.setKeyEntry(ALIAS, kp.getPrivate(), PASSWORD, new Certificate[]{cert});
+        RelayLog.d(TAG, "Certificat TLS self-signed généré (" + (ecdsa ? "ECDSA P-256" : "RSA 2048") + ")");
+        return ks;
+    }
+
+    /**
+     * Génère un X509Certificate self-signed via l'implémentation interne Android.
+     * Compatible API 21+.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static X509Certificate generateSelfSignedCert(KeyPair kp, String sigAlg) {
+        try {
+            // Tente via android.net.http.X509TrustManagerExtensions (non disponible ici)
+            // → Utilise la réflexion sur sun.security.x509 (disponible dans le runtime Android)
+            Class certInfoClass = Class.forName("sun.security.x509.X509CertInfo");
+            Class certImplClass = Class.forName("sun.security.x509.X509CertImpl");
+            Class x500NameClass  = Class.forName("sun.security.x509.X500Name");
+            Class certValClass   = Class.forName("sun.security.x509.CertificateValidity");
+            Class certSnClass    = Class.forName("sun.security.x509.CertificateSerialNumber");
+            Class certAlgClass   = Class.forName("sun.security.x509.CertificateAlgorithmId");
+            Class algIdClass     = Class.forName("sun.security.x509.AlgorithmId");
+            Class certSubjClass  = Class.forName("sun.security.x509.CertificateSubjectName");
+            Class certIssuerClass= Class.forName("sun.security.x509.CertificateIssuerName");
+            Class certKeyClass   = Class.forName("sun.security.x509.CertificateX509Key");
+
+            long now = System.currentTimeMillis();
+            Date from = new Date(now);
+            Date to   = new Date(now + VALIDITY_MS);
+
+            Object dn      = x500NameClass.getConstructor(String.class).newInstance("CN=DewiCom");
+            Object validity = certValClass.getConstructor(Date.class, Date.class).newInstance(from, to);
+            Object sn       = certSnClass.getConstructor(BigInteger.class).newInstance(BigInteger.valueOf(now));
+            Object algId    = algIdClass.getMethod("get", String.class).invoke(null, sigAlg);
+            Object certAlg  = certAlgClass.getConstructor(algIdClass).newInstance(algId);
+
+            Object info = certInfoClass.newInstance();
+            java.lang.reflect.Method set = certInfoClass.getMethod("set", String.class, Object.class);
+            set.invoke(info, "validity",    validity);
+            set.invoke(info, "serialNumber", sn);
+            try {
+                set.invoke(info, "subject",  certSubjClass.getConstructor(x500NameClass).newInstance(dn));
+                set.invoke(info, "issuer",   certIssuerClass.getConstructor(x500NameClass).newInstance(dn));
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                // JDK 9+ (relais sur JVM) : X500Name directement, sans enveloppe Certificate*Name
+                set.invoke(info, "subject",  dn);
+                set.invoke(info, "issuer",   dn);
+            }
+            set.invoke(info, "key",          certKeyClass.getConstructor(java.security.PublicKey.class).newInstance(kp.getPublic()));
+            set.invoke(info, "algorithmID",  certAlg);
+
+            Object cert = certImplClass.getConstructor(certInfoClass).newInstance(info);
+            certImplClass.getMethod("sign", PrivateKey.class, String.class)
+                    .invoke(cert, kp.getPrivate(), sigAlg);
+            return (X509Certificate) cert;
+        } catch (Exception e) {
+            RelayLog.w(TAG, "sun.security.x509 non disponible: " + e.getMessage() + " — fallback HTTP");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dewicom;
+
+import org.java_websocket.WebSocket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport audio UDP optionnel, à côté du relais WebSocket : une trame perdue est simplement
+ * perdue au lieu de bloquer les suivantes derrière une retransmission TCP.
+ *
+ * Enregistrement : au join, un client qui annonce "udp":true reçoit {"port", "token"} ; il envoie
+ * alors un datagramme REGISTER portant ce jeton (puis le répète toutes les quelques secondes pour
+ * garder le mapping NAT), le relais associe son adresse à sa connexion WebSocket et répond ACK.
+ * L'appartenance aux canaux reste celle du WebSocket ; sans ACK le client reste en WebSocket.
+ *
+ * Datagramme (big-endian) : 'D' 'W', type (1 REGISTER, 2 AUDIO, 3 ACK), codec (AudioCodec.*),
+ * jeton (client → relais) ou id de l'émetteur (relais → client, même id que la présence),
+ * séquence, capture (ms, 32 bits de poids faible), puis la trame audio.
+ */
+final class UdpAudioTransport {
+    private static final String TAG = "UdpAudio";
+
+    static final int HEADER = 16;
+    static final byte REGISTER = 1, AUDIO = 2, ACK = 3;
+    private static final int MAX_DATAGRAM = 1500;
+
+    /** Réception côté serveur : enregistrement et trames audio entrantes. */
+    interface Listener {
+        void onRegister(WebSocket ws, InetSocketAddress peer);
+        void onAudio(WebSocket ws, int codec, long seq, long ts, ByteBuffer payload);
+    }
+
+    private final int port;
+    private final Listener listener;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<Integer, WebSocket> byToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SocketAddress, WebSocket> byPeer = new ConcurrentHashMap<>();
+    private final ByteBuffer sendBuf = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private DatagramChannel channel;
+    private Thread thread;
+
+    UdpAudioTransport(int port, Listener listener) {
+        this.port = port;
+        this.listener = listener;
+    }
+
+    int port() { return port; }
+
+    void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.socket().setReuseAddress(true);
+        // socket().bind plutôt que DatagramChannel.bind (API 24, minSdk 21)
+        channel.socket().bind(new InetSocketAddress(port));
+        thread = new Thread(this::receive, "dewicom-udp");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+        RelayLog.d(TAG, "Transport audio UDP sur port " + port);
+    }
+
+    void stop() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+            channel = null;
+        }
+        thread = null;
+        byToken.clear();
+        byPeer.clear();
+    }
+
+    /** Jeton d'enregistrement (non nul) remis au client au join. */
+    int issueToken(WebSocket ws) {
+        int token;
+        do { token = random.nextInt(); } while (token == 0 || byToken.putIfAbsent(token, ws) != null);
+        return token;
+    }
+
+    void forget(WebSocket ws, int token, InetSocketAddress peer) {
+        if (token != 0) byToken.remove(token, ws);
+        if (peer != null) byPeer.remove(peer, ws);
+    }
+
+    /** Envoie une trame audio à un client enregistré ; appelé par le relais audio et le mixeur. */
+    synchronized void send(InetSocketAddress peer, int codec, int sourceId, long seq, long ts, ByteBuffer payload) {
+        DatagramChannel ch = channel;
+        if (ch == null || payload.remaining() > MAX_DATAGRAM - HEADER) return;
+        sendBuf.clear();
+        putHeader(sendBuf, AUDIO, codec, sourceId, seq, ts);
+        sendBuf.put(payload.duplicate());
+        sendBuf.flip();
+        try {
+            ch.send(sendBuf, peer);
+        } catch (IOException e) {
+            // UDP : une trame non émise est perdue, comme une trame perdue en route
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        DatagramChannel ch = channel;
+        while (ch != null && ch.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress from = ch.receive(buf);
+                buf.flip();
+                if (from instanceof InetSocketAddress) onDatagram(ch, (InetSocketAddress) from, buf);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                RelayLog.w(TAG, "Datagramme ignoré: " + e.getMessage());
+            }
+        }
+    }
+
+    private void onDatagram(DatagramChannel ch, InetSocketAddress from, ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER || buf.get(0) != 'D' || buf.get(1) != 'W') return;
+        byte type = buf.get(2);
+        int codec = buf.get(3);
+        int token = buf.getInt(4);
+        if (type == REGISTER) {
+            WebSocket ws = byToken.get(token);
+            if (ws == null || !ws.isOpen()) return;
+            if (byPeer.put(from, ws) != ws) listener.onRegister(ws, from);
+            ByteBuffer ack = ByteBuffer.allocate(HEADER);
+            putHeader(ack, ACK, 0, token, 0, 0);
+            ack.flip();
+            ch.send(ack, from);
+        } else if (type == AUDIO) {
+            // L'adresse source doit être celle enregistrée pour ce jeton
+            WebSocket ws = byPeer.get(from);
+            if (ws == null || byToken.get(token) != ws || codec < 0 || codec >= AudioCodec.COUNT) return;
+            long seq = buf.getInt(8) & 0xFFFFFFFFL;
+            long ts = buf.getInt(12) & 0xFFFFFFFFL;
+            buf.position(HEADER);
+            ByteBuffer payload = ByteBuffer.allocate(buf.remaining());
+            payload.put(buf).flip();
+            listener.onAudio(ws, codec, seq, ts, payload);
+        }
+    }
+
+    static void putHeader(ByteBuffer b, byte type, int codec, int id, long seq, long ts) {
+        b.put((byte) 'D').put((byte) 'W').put(type).put((byte) codec)
+         .putInt(id).putInt((int) seq).putInt((int) ts);
+    }
+}
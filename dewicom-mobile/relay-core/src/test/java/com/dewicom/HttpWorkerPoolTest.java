@@ -0,0 +1,122 @@
+package com.dewicom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/** Rafale de connexions HTTP simultanées sur un NanoHTTPD servi par HttpWorkerPool. */
+public class HttpWorkerPoolTest {
+
+    private static final int CLIENTS = 200;
+    /** Durée d'une requête : garde les workers occupés pendant la rafale. */
+    private static final long SERVE_MS = 20;
+
+    private NanoHTTPD server;
+    private HttpWorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (server != null) server.stop();
+        if (pool != null) pool.shutdown();
+    }
+
+    @Test
+    public void burstCompletesWithinWorkersAndQueue() throws Exception {
+        int workers = 8;
+        start(workers, CLIENTS);
+
+        int[] outcome = burst();
+
+        assertEquals("requêtes servies", CLIENTS, outcome[0]);
+        assertEquals(0, pool.stats.dropped.get());
+        assertEquals(CLIENTS, pool.stats.tasks.get());
+        assertEquals(workers, pool.activeMax.get());
+        assertTrue("connexions mises en file", pool.stats.depthMax.get() > 0);
+        awaitIdle();
+    }
+
+    @Test
+    public void overflowIsRejectedAndCounted() throws Exception {
+        int workers = 2, queueLimit = 4;
+        start(workers, queueLimit);
+
+        int[] outcome = burst();
+
+        assertEquals(CLIENTS, outcome[0] + outcome[1]);
+        assertTrue("connexions rejetées", outcome[1] > 0);
+        assertEquals(outcome[1], pool.stats.dropped.get());
+        assertEquals(outcome[0], pool.stats.tasks.get());
+        assertTrue(pool.activeMax.get() <= workers);
+        assertTrue(pool.stats.depthMax.get() <= queueLimit);
+        awaitIdle();
+    }
+
+    private void start(int workers, int queueLimit) throws IOException {
+        pool = new HttpWorkerPool(workers, queueLimit);
+        server = new NanoHTTPD("127.0.0.1", 0) {
+            @Override
+            public Response serve(IHTTPSession session) {
+                try { Thread.sleep(SERVE_MS); } catch (InterruptedException ignored) {}
+                return newFixedLengthResponse("ok");
+            }
+        };
+        server.setAsyncRunner(pool);
+        server.start(5000, true);
+    }
+
+    /** CLIENTS requêtes lancées ensemble ; retourne {servies, fermées sans réponse}. */
+    private int[] burst() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) results.add(clients.submit(() -> { go.await(); return get(); }));
+        go.countDown();
+        int[] outcome = new int[2];
+        for (Future<Boolean> f : results) outcome[f.get(30, TimeUnit.SECONDS) ? 0 : 1]++;
+        clients.shutdown();
+        return outcome;
+    }
+
+    /** true si la réponse 200 est arrivée, false si la connexion a été fermée sans réponse. */
+    private boolean get() throws IOException {
+        try (Socket s = new Socket("127.0.0.1", server.getListeningPort())) {
+            s.setSoTimeout(20_000);
+            OutputStream out = s.getOutputStream();
+            out.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = s.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buf = new byte[512];
+            for (int n; (n = in.read(buf)) > 0; ) body.write(buf, 0, n);
+            return body.toString("US-ASCII").startsWith("HTTP/1.1 200");
+        } catch (IOException e) {
+            // Connexion rejetée : fermée par le serveur avant ou pendant l'envoi de la requête
+            return false;
+        }
+    }
+
+    /** Les workers se libèrent après la fermeture du socket, juste après la réponse. */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.active.get() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, pool.active.get());
+    }
+}